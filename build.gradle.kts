@@ -1,6 +1,7 @@
 plugins {
     java
     id("io.github.goooler.shadow") version "8.1.8"
+    id("me.champeau.jmh") version "0.7.2"
 }
 
 group = "com.haksnbot"
@@ -26,6 +27,20 @@ dependencies {
     compileOnly("com.github.MilkBowl:VaultAPI:1.7.1")
     compileOnly(files("/home/haksndot/server/plugins/Dynmap.jar"))
     implementation("de.rapha149.signgui:signgui:2.5.4")
+
+    testImplementation(platform("org.junit:junit-bom:5.11.3"))
+    testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    // Benchmarks run outside the server, so they need the server and plugin APIs at runtime
+    jmhImplementation("io.papermc.paper:paper-api:1.21.4-R0.1-SNAPSHOT")
+    jmhImplementation("com.github.TechFortress:GriefPrevention:17.0.0")
+}
+
+jmh {
+    warmupIterations.set(3)
+    iterations.set(5)
+    fork.set(1)
 }
 
 tasks {
@@ -40,6 +55,10 @@ tasks {
         dependsOn(shadowJar)
     }
 
+    test {
+        useJUnitPlatform()
+    }
+
     processResources {
         filesMatching("plugin.yml") {
             expand("version" to version)
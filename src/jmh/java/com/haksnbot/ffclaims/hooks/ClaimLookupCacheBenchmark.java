@@ -0,0 +1,125 @@
+package com.haksnbot.ffclaims.hooks;
+
+import com.haksnbot.ffclaims.util.BenchmarkWorlds;
+import me.ryanhamshire.GriefPrevention.Claim;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Claim-at-location lookups as player movement makes them: {@link ClaimLookupCache} against an
+ * uncached lookup done the way GriefPrevention's data store does it (chunk index, then
+ * {@link Claim#contains} on every candidate). Half of the probes are inside a claim.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class ClaimLookupCacheBenchmark {
+
+    private static final int PROBES = 4096;
+    private static final int SPREAD = 10_000;
+
+    @Param({"100", "10000"})
+    public int claims;
+
+    private GriefPreventionHook hook;
+    private ClaimLookupCache cache;
+    private Location[] probes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        World world = BenchmarkWorlds.create("world");
+        Random random = new Random(42);
+        Map<Long, List<Claim>> byChunk = new HashMap<>();
+        List<Claim> placed = new ArrayList<>(claims);
+        for (int i = 0; i < claims; i++) {
+            int x = random.nextInt(2 * SPREAD) - SPREAD;
+            int z = random.nextInt(2 * SPREAD) - SPREAD;
+            int size = 32 + random.nextInt(96);
+            Claim claim = new Claim(new Location(world, x, -64, z), new Location(world, x + size, 320, z + size),
+                    UUID.randomUUID(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>(),
+                    (long) i);
+            claim.inDataStore = true;
+            placed.add(claim);
+            for (int chunkX = x >> 4; chunkX <= (x + size) >> 4; chunkX++) {
+                for (int chunkZ = z >> 4; chunkZ <= (z + size) >> 4; chunkZ++) {
+                    byChunk.computeIfAbsent(Chunk.getChunkKey(chunkX, chunkZ), k -> new ArrayList<>()).add(claim);
+                }
+            }
+        }
+
+        hook = new GriefPreventionHook() {
+            @Override
+            public Claim getClaimAt(Location location, boolean ignoreHeight) {
+                List<Claim> candidates = byChunk.get(Chunk.getChunkKey(location.getBlockX() >> 4, location.getBlockZ() >> 4));
+                if (candidates == null) {
+                    return null;
+                }
+                for (Claim claim : candidates) {
+                    if (!claim.inDataStore || !claim.contains(location, ignoreHeight, false)) {
+                        continue;
+                    }
+                    if (claim.children != null) {
+                        for (Claim child : claim.children) {
+                            if (child.inDataStore && child.contains(location, ignoreHeight, false)) {
+                                return child;
+                            }
+                        }
+                    }
+                    return claim;
+                }
+                return null;
+            }
+
+            @Override
+            public Collection<Claim> getClaimsInChunk(int chunkX, int chunkZ) {
+                return byChunk.get(Chunk.getChunkKey(chunkX, chunkZ));
+            }
+        };
+        cache = new ClaimLookupCache(hook);
+
+        probes = new Location[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            if (i % 2 == 0) {
+                Location lesser = placed.get(random.nextInt(claims)).getLesserBoundaryCorner();
+                probes[i] = new Location(world, lesser.getBlockX() + random.nextInt(32), 64,
+                        lesser.getBlockZ() + random.nextInt(32));
+            } else {
+                probes[i] = new Location(world, random.nextInt(2 * SPREAD) - SPREAD, 64,
+                        random.nextInt(2 * SPREAD) - SPREAD);
+            }
+        }
+    }
+
+    private Location probe() {
+        return probes[next++ & (PROBES - 1)];
+    }
+
+    @Benchmark
+    public Claim cached() {
+        return cache.getClaimAt(probe(), true);
+    }
+
+    @Benchmark
+    public Claim uncached() {
+        return hook.getClaimAt(probe(), true);
+    }
+}
@@ -0,0 +1,167 @@
+package com.haksnbot.ffclaims.market.signs;
+
+import com.haksnbot.ffclaims.market.data.AuctionData;
+import com.haksnbot.ffclaims.market.data.SaleData;
+import com.haksnbot.ffclaims.util.BenchmarkWorlds;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.format.NamedTextColor;
+import net.kyori.adventure.text.format.TextDecoration;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.text.DecimalFormat;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign text formatting: {@link SignFormatter} against the version it replaced, which formatted
+ * through a shared DecimalFormat and String.format and rebuilt every line on every call.
+ * Prices span a few dollars to billions so every branch of the shortened form is taken.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class SignFormatterBenchmark {
+
+    private static final int LISTINGS = 1024;
+
+    private double[] prices;
+    private SaleData[] sales;
+    private AuctionData[] auctions;
+    private int next;
+
+    @Setup
+    public void setup() {
+        World world = BenchmarkWorlds.create("world");
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        prices = new double[LISTINGS];
+        sales = new SaleData[LISTINGS];
+        auctions = new AuctionData[LISTINGS];
+        for (int i = 0; i < LISTINGS; i++) {
+            prices[i] = Math.round(Math.pow(10, random.nextDouble() * 9) * 100) / 100.0;
+            Location sign = new Location(world, i, 64, 0);
+            sales[i] = new SaleData("sale-" + i, UUID.randomUUID(), "Seller" + i, prices[i],
+                    sign, sign, i, now, 1024, "32x32");
+            auctions[i] = new AuctionData("auction-" + i, UUID.randomUUID(), "Seller" + i, prices[i],
+                    random.nextBoolean() ? prices[i] * 3 : 0, sign, sign, i, now,
+                    now + TimeUnit.HOURS.toMillis(1 + random.nextInt(72)), 1024, "32x32");
+        }
+    }
+
+    private int index() {
+        return next++ & (LISTINGS - 1);
+    }
+
+    @Benchmark
+    public String formatPrice() {
+        return SignFormatter.formatPrice(prices[index()]);
+    }
+
+    @Benchmark
+    public String formatPriceOld() {
+        return OldSignFormatter.formatPrice(prices[index()]);
+    }
+
+    @Benchmark
+    public String formatPriceFull() {
+        return SignFormatter.formatPriceFull(prices[index()]);
+    }
+
+    @Benchmark
+    public String formatPriceFullOld() {
+        return OldSignFormatter.formatPriceFull(prices[index()]);
+    }
+
+    @Benchmark
+    public Component[] saleSignLines() {
+        return SignFormatter.getSaleSignLines(sales[index()]);
+    }
+
+    @Benchmark
+    public Component[] saleSignLinesOld() {
+        return OldSignFormatter.getSaleSignLines(sales[index()]);
+    }
+
+    @Benchmark
+    public Component[] auctionSignLines() {
+        return SignFormatter.getAuctionSignLines(auctions[index()]);
+    }
+
+    @Benchmark
+    public Component[] auctionSignLinesOld() {
+        return OldSignFormatter.getAuctionSignLines(auctions[index()]);
+    }
+
+    /**
+     * SignFormatter's formatting as it was before its lines were cached.
+     */
+    private static final class OldSignFormatter {
+
+        private static final DecimalFormat PRICE_FORMAT = new DecimalFormat("#,###");
+
+        static String formatPrice(double price) {
+            if (price >= 1_000_000) {
+                return "$" + PRICE_FORMAT.format(price / 1_000_000) + "M";
+            } else if (price >= 1_000) {
+                double k = price / 1_000;
+                if (k == Math.floor(k)) {
+                    return "$" + (int) k + "k";
+                }
+                return "$" + String.format("%.1fk", k);
+            } else {
+                return "$" + PRICE_FORMAT.format(price);
+            }
+        }
+
+        static String formatPriceFull(double price) {
+            return "$" + PRICE_FORMAT.format(price);
+        }
+
+        static Component[] getSaleSignLines(SaleData sale) {
+            return new Component[] {
+                Component.text("[For Sale]")
+                    .color(NamedTextColor.DARK_BLUE)
+                    .decoration(TextDecoration.BOLD, true),
+                Component.text(formatPriceFull(sale.getPrice()))
+                    .color(NamedTextColor.BLACK),
+                Component.text(truncateName(sale.getSellerName()))
+                    .color(NamedTextColor.BLACK),
+                Component.text(sale.getDimensions())
+                    .color(NamedTextColor.DARK_GRAY)
+            };
+        }
+
+        static Component[] getAuctionSignLines(AuctionData auction) {
+            String line3 = auction.hasBuyNow()
+                    ? "BuyNow: " + formatPrice(auction.getBuyNowPrice())
+                    : auction.getSellerName();
+            return new Component[] {
+                Component.text("[Auction]")
+                    .color(NamedTextColor.DARK_BLUE)
+                    .decoration(TextDecoration.BOLD, true),
+                Component.text("Min: " + formatPrice(auction.getMinimumBid()))
+                    .color(NamedTextColor.BLACK),
+                Component.text(truncateName(line3))
+                    .color(NamedTextColor.BLACK),
+                Component.text("Ends: " + auction.getTimeRemainingFormatted())
+                    .color(NamedTextColor.DARK_GRAY)
+            };
+        }
+
+        private static String truncateName(String name) {
+            if (name.length() > 15) {
+                return name.substring(0, 14) + "\u2026";
+            }
+            return name;
+        }
+    }
+}
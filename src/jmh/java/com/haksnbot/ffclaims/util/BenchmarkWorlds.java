@@ -0,0 +1,31 @@
+package com.haksnbot.ffclaims.util;
+
+import org.bukkit.World;
+
+import java.lang.reflect.Proxy;
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+/**
+ * Stand-in worlds for benchmarks, which run without a server. Only the methods the
+ * benchmarked code calls are answered; anything else throws.
+ */
+public final class BenchmarkWorlds {
+
+    private BenchmarkWorlds() {
+    }
+
+    public static World create(String name) {
+        UUID uid = UUID.nameUUIDFromBytes(name.getBytes(StandardCharsets.UTF_8));
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[]{World.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getUID" -> uid;
+                    case "getName", "toString" -> name;
+                    case "getMinHeight" -> -64;
+                    case "getMaxHeight" -> 320;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+}
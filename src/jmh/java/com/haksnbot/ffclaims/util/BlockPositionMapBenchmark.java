@@ -0,0 +1,94 @@
+package com.haksnbot.ffclaims.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Sign lookups by block position: {@link BlockPositionMap} against the "world:x:y:z" string keys
+ * it replaced and against a plain Location-keyed map. Half of the probes hit a sign, as block
+ * events mostly land on other blocks.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BlockPositionMapBenchmark {
+
+    private static final int PROBES = 4096;
+
+    @Param({"1000", "100000"})
+    public int signs;
+
+    private final BlockPositionMap<String> packed = new BlockPositionMap<>();
+    private final Map<String, String> stringKeyed = new HashMap<>();
+    private final Map<Location, String> locationKeyed = new HashMap<>();
+    private Location[] probes;
+    private int next;
+
+    @Setup
+    public void setup() {
+        World world = BenchmarkWorlds.create("world");
+        Random random = new Random(42);
+        Location[] placed = new Location[signs];
+        for (int i = 0; i < signs; i++) {
+            Location location = randomLocation(world, random);
+            placed[i] = location;
+            String id = "listing-" + i;
+            packed.put(location, id);
+            stringKeyed.put(locationKey(location), id);
+            locationKeyed.put(location, id);
+        }
+
+        // Fresh Location objects, as an event would hand them over
+        probes = new Location[PROBES];
+        for (int i = 0; i < PROBES; i++) {
+            probes[i] = i % 2 == 0 ? placed[random.nextInt(signs)].clone() : randomLocation(world, random);
+        }
+    }
+
+    private static Location randomLocation(World world, Random random) {
+        return new Location(world, random.nextInt(20_000) - 10_000, random.nextInt(384) - 64,
+                random.nextInt(20_000) - 10_000);
+    }
+
+    private Location probe() {
+        return probes[next++ & (PROBES - 1)];
+    }
+
+    @Benchmark
+    public String packedPosition() {
+        return packed.get(probe());
+    }
+
+    @Benchmark
+    public String stringKey() {
+        return stringKeyed.get(locationKey(probe()));
+    }
+
+    @Benchmark
+    public String locationKey() {
+        return locationKeyed.get(probe());
+    }
+
+    /**
+     * The key MarketDataManager built for every sign lookup before BlockPositionMap.
+     */
+    private static String locationKey(Location location) {
+        return location.getWorld().getName() + ":" +
+                location.getBlockX() + ":" +
+                location.getBlockY() + ":" +
+                location.getBlockZ();
+    }
+}
@@ -1,12 +1,12 @@
 package com.haksnbot.ffclaims;
 
+import com.haksnbot.ffclaims.hooks.ClaimLookupCache;
 import com.haksnbot.ffclaims.market.data.AuctionData;
 import com.haksnbot.ffclaims.market.data.BidData;
 import com.haksnbot.ffclaims.market.data.SaleData;
+import com.haksnbot.ffclaims.market.data.TransactionRecord;
 import com.haksnbot.ffclaims.market.signs.SignFormatter;
-import org.bukkit.Bukkit;
 import org.bukkit.ChatColor;
-import org.bukkit.OfflinePlayer;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -44,6 +44,8 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
             case "mybids" -> handleMyBids(sender);
             case "mylistings" -> handleMyListings(sender);
             case "transactions", "tx" -> handleTransactions(sender, args);
+            case "names" -> handleNames(sender, args);
+            case "stats" -> handleStats(sender);
             case "help" -> showHelp(sender);
             default -> sender.sendMessage(plugin.getConfigManager().getPrefix() +
                     "Unknown command. Use /ffc help for help.");
@@ -64,6 +66,61 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
                 plugin.getConfigManager().getMessage("config-reloaded"));
     }
 
+    private void handleNames(CommandSender sender, String[] args) {
+        if (!sender.hasPermission("ffclaims.admin")) {
+            sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                    plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        if (!plugin.isNamingEnabled()) {
+            sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                    "Naming module is not enabled.");
+            return;
+        }
+
+        String action = args.length > 1 ? args[1].toLowerCase() : "";
+        switch (action) {
+            case "import" -> plugin.getNamingDataManager().importYaml(count -> {
+                if (count == null) {
+                    sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                            "Could not import naming-data.yml. Check the server console for details.");
+                    return;
+                }
+                if (count < 0) {
+                    sender.sendMessage(plugin.getConfigManager().getPrefix() + "naming-data.yml not found.");
+                    return;
+                }
+                if (plugin.getDynmapIntegration() != null) {
+                    plugin.getDynmapIntegration().refreshAll();
+                }
+                sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                        "Imported " + count + " claim names from naming-data.yml.");
+            });
+            case "export" -> plugin.getNamingDataManager().exportYaml(count ->
+                    sender.sendMessage(plugin.getConfigManager().getPrefix() + (count == null
+                            ? "Could not export naming-data.yml. Check the server console for details."
+                            : "Exported " + count + " claim names to naming-data.yml.")));
+            default -> sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                    "Usage: /ffc names <import|export>");
+        }
+    }
+
+    private void handleStats(CommandSender sender) {
+        if (!sender.hasPermission("ffclaims.admin")) {
+            sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                    plugin.getConfigManager().getMessage("no-permission"));
+            return;
+        }
+
+        ClaimLookupCache cache = plugin.getClaimLookupCache();
+        long lookups = cache.getHits() + cache.getMisses();
+        double hitRate = lookups == 0 ? 0 : cache.getHits() * 100.0 / lookups;
+        sender.sendMessage("\u00A76--- FF-Claims Stats ---");
+        sender.sendMessage(String.format("\u00A77Claim lookup cache: \u00A7e%d \u00A77hits, \u00A7e%d \u00A77misses (\u00A7a%.1f%%\u00A77), \u00A7e%d \u00A77chunks cached",
+                cache.getHits(), cache.getMisses(), hitRate, cache.getCachedChunks()));
+    }
+
     private void handleList(CommandSender sender) {
         if (!plugin.isMarketEnabled()) {
             sender.sendMessage(plugin.getConfigManager().getPrefix() +
@@ -222,7 +279,7 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
                     auction.getSignLocation().getBlockY(),
                     auction.getSignLocation().getBlockZ());
             player.sendMessage(String.format("\u00A77- \u00A76[Auction] \u00A7eBids: %d \u00A77| \u00A7a%s \u00A77| %s",
-                    auction.getBids().size(),
+                    auction.getBidCount(),
                     auction.getTimeRemainingFormatted(),
                     location));
         }
@@ -244,19 +301,25 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
         // Check if looking up a specific transaction
         if (args.length > 1 && args[1].toUpperCase().startsWith("TX")) {
             String txId = args[1].toUpperCase();
-            String detail = plugin.getTransactionLogger().getTransaction(txId);
-            if (detail == null) {
-                sender.sendMessage(plugin.getConfigManager().getPrefix() +
-                        "Transaction " + txId + " not found.");
-                return;
-            }
-            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', detail));
+            plugin.getTransactionLogger().getTransaction(txId, detail -> {
+                if (detail == null) {
+                    sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                            "Transaction " + txId + " not found.");
+                    return;
+                }
+                sender.sendMessage(ChatColor.translateAlternateColorCodes('&', detail));
+            }, () -> sendTransactionReadFailed(sender));
             return;
         }
 
+        // Optional paging cursor: only show transactions older than this one
+        int before = Integer.MAX_VALUE;
+        if (args.length > 2 && args[2].toUpperCase().startsWith("TX")) {
+            before = TransactionRecord.parseSequence(args[2].toUpperCase());
+        }
+
         // Determine count and optional player filter
         int count = 10;
-        UUID playerFilter = null;
 
         if (args.length > 1) {
             // Try to parse as number first
@@ -266,30 +329,45 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
             } catch (NumberFormatException e) {
                 // Try to parse as player name
                 if (sender.hasPermission("ffclaims.admin")) {
-                    @SuppressWarnings("deprecation")
-                    OfflinePlayer target = Bukkit.getOfflinePlayer(args[1]);
-                    if (target.hasPlayedBefore() || target.isOnline()) {
-                        playerFilter = target.getUniqueId();
-                    } else {
-                        sender.sendMessage(plugin.getConfigManager().getPrefix() +
-                                "Player '" + args[1] + "' not found.");
-                        return;
-                    }
+                    int cursor = before;
+                    plugin.getPlayerNameCache().resolveUUID(args[1], target -> {
+                        if (target == null) {
+                            sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                                    "Player '" + args[1] + "' not found.");
+                            return;
+                        }
+                        queryTransactions(sender, 10, target, cursor, args[1]);
+                    });
                 } else {
                     sender.sendMessage(plugin.getConfigManager().getPrefix() +
                             "You don't have permission to view other players' transactions.");
-                    return;
                 }
+                return;
             }
         }
 
         // If not admin and looking at general history, could show only their own
         // For now, allow all players to see recent transactions (it's public info)
 
-        List<String> transactions = plugin.getTransactionLogger().getRecentTransactions(count, playerFilter);
+        queryTransactions(sender, count, null, before, args.length > 1 ? args[1] : String.valueOf(count));
+    }
 
+    private void queryTransactions(CommandSender sender, int count, UUID playerFilter, int before, String pageArg) {
+        boolean filtered = playerFilter != null;
+        plugin.getTransactionLogger().getRecentTransactions(count, playerFilter, before,
+                transactions -> showTransactions(sender, transactions, filtered, pageArg, count),
+                () -> sendTransactionReadFailed(sender));
+    }
+
+    private void sendTransactionReadFailed(CommandSender sender) {
+        sender.sendMessage(plugin.getConfigManager().getPrefix() +
+                "Could not read the transaction log. Check the server console for details.");
+    }
+
+    private void showTransactions(CommandSender sender, List<TransactionRecord> transactions,
+                                  boolean filtered, String pageArg, int pageSize) {
         if (transactions.isEmpty()) {
-            String msg = playerFilter != null ?
+            String msg = filtered ?
                     "No transactions found for that player." :
                     "No transactions recorded yet.";
             sender.sendMessage(plugin.getConfigManager().getPrefix() + msg);
@@ -299,11 +377,16 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
         int totalCount = plugin.getTransactionLogger().getTransactionCount();
         sender.sendMessage("\u00A76--- Recent Transactions (" + transactions.size() + "/" + totalCount + " total) ---");
 
-        for (String tx : transactions) {
-            sender.sendMessage(ChatColor.translateAlternateColorCodes('&', tx));
+        for (TransactionRecord tx : transactions) {
+            sender.sendMessage(ChatColor.translateAlternateColorCodes('&',
+                    plugin.getTransactionLogger().formatTransaction(tx)));
         }
 
         sender.sendMessage("\u00A77Use \u00A7e/ffc tx <TX#>\u00A77 for details.");
+        if (transactions.size() == pageSize) {
+            String oldest = transactions.get(transactions.size() - 1).getTxId();
+            sender.sendMessage("\u00A77Older: \u00A7e/ffc tx " + pageArg + " " + oldest);
+        }
     }
 
     private void showHelp(CommandSender sender) {
@@ -314,7 +397,7 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
         if (plugin.isNamingEnabled()) {
             sender.sendMessage("\u00A76--- Naming ---");
             sender.sendMessage("\u00A7e/nameclaim [name|clear] \u00A77- Name your claim");
-            sender.sendMessage("\u00A7e/claimtop [page] \u00A77- Claim block rankings");
+            sender.sendMessage("\u00A7e/claimtop [page|me] \u00A77- Claim block rankings");
         }
 
         if (plugin.isMarketEnabled()) {
@@ -322,7 +405,7 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("\u00A7e/ffc list \u00A77- Show all active listings");
             sender.sendMessage("\u00A7e/ffc mybids \u00A77- Show your active bids");
             sender.sendMessage("\u00A7e/ffc mylistings \u00A77- Show your active listings");
-            sender.sendMessage("\u00A7e/ffc transactions [count] \u00A77- View recent transactions");
+            sender.sendMessage("\u00A7e/ffc transactions [count] [before TX#] \u00A77- View recent transactions");
             sender.sendMessage("\u00A7e/ffc tx <TX#> \u00A77- View transaction details");
             sender.sendMessage("");
             sender.sendMessage("\u00A77To sell a claim, place a sign with:");
@@ -340,6 +423,8 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
             sender.sendMessage("");
             sender.sendMessage("\u00A76--- Admin ---");
             sender.sendMessage("\u00A7e/ffc reload \u00A77- Reload configuration");
+            sender.sendMessage("\u00A7e/ffc names <import|export> \u00A77- Claim names from/to naming-data.yml");
+            sender.sendMessage("\u00A7e/ffc stats \u00A77- Claim lookup cache statistics");
         }
     }
 
@@ -361,7 +446,13 @@ public class FFClaimsCommand implements CommandExecutor, TabCompleter {
 
             if (sender.hasPermission("ffclaims.admin")) {
                 if ("reload".startsWith(partial)) completions.add("reload");
+                if ("names".startsWith(partial)) completions.add("names");
+                if ("stats".startsWith(partial)) completions.add("stats");
             }
+        } else if (args.length == 2 && args[0].equalsIgnoreCase("names") && sender.hasPermission("ffclaims.admin")) {
+            String partial = args[1].toLowerCase();
+            if ("import".startsWith(partial)) completions.add("import");
+            if ("export".startsWith(partial)) completions.add("export");
         }
 
         return completions;
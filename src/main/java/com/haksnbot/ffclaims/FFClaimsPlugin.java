@@ -1,27 +1,54 @@
 package com.haksnbot.ffclaims;
 
 import com.haksnbot.ffclaims.config.ConfigManager;
+import com.haksnbot.ffclaims.hooks.ClaimLookupCache;
 import com.haksnbot.ffclaims.hooks.GriefPreventionHook;
 import com.haksnbot.ffclaims.hooks.VaultHook;
+import com.haksnbot.ffclaims.market.data.AuctionData;
+import com.haksnbot.ffclaims.market.data.BidData;
 import com.haksnbot.ffclaims.market.data.MarketDataManager;
+import com.haksnbot.ffclaims.market.data.MarketStore;
+import com.haksnbot.ffclaims.market.data.SaleData;
+import com.haksnbot.ffclaims.market.data.SqliteMarketStore;
 import com.haksnbot.ffclaims.market.data.TransactionLogger;
+import com.haksnbot.ffclaims.market.data.YamlMarketStore;
 import com.haksnbot.ffclaims.market.gui.MenuManager;
+import com.haksnbot.ffclaims.market.listeners.ClaimDeleteListener;
 import com.haksnbot.ffclaims.market.listeners.InventoryClickListener;
+import com.haksnbot.ffclaims.market.listeners.ListingSignChunkListener;
 import com.haksnbot.ffclaims.market.listeners.MarketSignInteractListener;
 import com.haksnbot.ffclaims.market.listeners.MarketSignListener;
 import com.haksnbot.ffclaims.market.managers.AuctionManager;
 import com.haksnbot.ffclaims.market.managers.ListingManager;
 import com.haksnbot.ffclaims.market.managers.SaleManager;
 import com.haksnbot.ffclaims.market.signs.SignManager;
+import com.haksnbot.ffclaims.market.signs.VirtualCountdownRenderer;
 import com.haksnbot.ffclaims.market.tasks.AuctionExpirationTask;
+import com.haksnbot.ffclaims.market.tasks.AuctionSignRefreshTask;
+import com.haksnbot.ffclaims.market.tasks.MarketCompactionTask;
 import com.haksnbot.ffclaims.naming.ClaimEntryListener;
+import com.haksnbot.ffclaims.naming.ClaimLeaderboard;
 import com.haksnbot.ffclaims.naming.ClaimTopCommand;
 import com.haksnbot.ffclaims.naming.ClaimsListListener;
 import com.haksnbot.ffclaims.naming.DynmapIntegration;
 import com.haksnbot.ffclaims.naming.NameClaimCommand;
 import com.haksnbot.ffclaims.naming.NamingDataManager;
+import com.haksnbot.ffclaims.storage.PersistenceService;
+import com.haksnbot.ffclaims.util.PlayerNameCache;
+import org.bukkit.World;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandSender;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.logging.Level;
+
 /**
  * FF-Claims: Unified Finite Frontier claims plugin.
  * Combines claim naming and claim marketplace features.
@@ -33,10 +60,18 @@ public class FFClaimsPlugin extends JavaPlugin {
     // Core components
     private ConfigManager configManager;
     private GriefPreventionHook griefPreventionHook;
+    private ClaimLookupCache claimLookupCache;
+    private PlayerNameCache playerNameCache;
+    private PersistenceService persistenceService;
+
+    // Data is loaded in the background; nothing is registered until every stage is done
+    private CompletableFuture<Void> startup;
+    private volatile boolean ready = false;
 
     // Naming module components
     private NamingDataManager namingDataManager;
     private DynmapIntegration dynmapIntegration;
+    private ClaimLeaderboard claimLeaderboard;
     private boolean namingEnabled = true;
 
     // Market module components (optional - requires Vault)
@@ -49,6 +84,9 @@ public class FFClaimsPlugin extends JavaPlugin {
     private AuctionManager auctionManager;
     private MenuManager menuManager;
     private AuctionExpirationTask expirationTask;
+    private AuctionSignRefreshTask signRefreshTask;
+    private VirtualCountdownRenderer virtualCountdownRenderer;
+    private MarketCompactionTask compactionTask;
     private boolean marketEnabled = false;
     private boolean dualCurrencyActive = false;
 
@@ -60,6 +98,9 @@ public class FFClaimsPlugin extends JavaPlugin {
         configManager = new ConfigManager(this);
         configManager.loadConfig();
 
+        // Background writer shared by all data files
+        persistenceService = new PersistenceService(this, configManager.getStorageWriteDelayTicks());
+
         // Initialize GriefPrevention hook (required)
         griefPreventionHook = new GriefPreventionHook();
         if (!griefPreventionHook.isAvailable()) {
@@ -67,12 +108,107 @@ public class FFClaimsPlugin extends JavaPlugin {
             getServer().getPluginManager().disablePlugin(this);
             return;
         }
+        claimLookupCache = new ClaimLookupCache(griefPreventionHook);
+        getServer().getPluginManager().registerEvents(claimLookupCache, this);
+        playerNameCache = new PlayerNameCache(this, PlayerNameCache.DEFAULT_CAPACITY);
+        getServer().getPluginManager().registerEvents(playerNameCache, this);
+
+        namingEnabled = configManager.isNamingEnabled();
+        if (!namingEnabled) {
+            getLogger().info("Naming module disabled in config.");
+        }
+        marketEnabled = checkMarketDependencies();
+
+        // Load the data files in parallel on virtual threads. Worlds are looked up here,
+        // on the main thread, so the loaders can build Locations without touching Bukkit.
+        Function<String, World> worlds = snapshotWorlds();
+        long start = System.nanoTime();
+        ExecutorService loader = Executors.newVirtualThreadPerTaskExecutor();
+        CompletableFuture<Void> namingStage = namingEnabled
+                ? CompletableFuture.runAsync(this::loadNamingData, loader)
+                : CompletableFuture.completedFuture(null);
+        CompletableFuture<Void> marketStage = marketEnabled
+                ? CompletableFuture.runAsync(() -> loadMarketData(worlds), loader)
+                : CompletableFuture.completedFuture(null);
+        loader.shutdown();
+
+        // Everything that needs Bukkit happens back on the main thread
+        startup = CompletableFuture.allOf(namingStage, marketStage);
+        startup.whenComplete((result, error) -> {
+            if (isEnabled()) {
+                getServer().getScheduler().runTask(this, () -> finishStartup(namingStage, marketStage, start));
+            }
+        });
+    }
+
+    /**
+     * Map of the worlds loaded right now, safe to read from any thread.
+     */
+    private Function<String, World> snapshotWorlds() {
+        Map<String, World> worlds = new HashMap<>();
+        for (World world : getServer().getWorlds()) {
+            worlds.put(world.getName(), world);
+        }
+        return Map.copyOf(worlds)::get;
+    }
+
+    private void loadNamingData() {
+        long start = System.nanoTime();
+        namingDataManager = new NamingDataManager(this);
+        namingDataManager.load();
+        logStage("naming data", start);
+    }
+
+    private void loadMarketData(Function<String, World> worlds) {
+        // One store serves both loads, so these run in sequence
+        long start = System.nanoTime();
+        MarketStore marketStore = createMarketStore(worlds);
+        logStage("market storage (" + marketStore.getType() + ")", start);
+
+        start = System.nanoTime();
+        marketDataManager = new MarketDataManager(this, marketStore);
+        marketDataManager.load(worlds);
+        logStage("market listings", start);
+
+        start = System.nanoTime();
+        transactionLogger = new TransactionLogger(this, marketStore);
+        logStage("transaction index", start);
+    }
+
+    private void logStage(String stage, long startNanos) {
+        getLogger().info("Loaded " + stage + " in " + elapsedMillis(startNanos) + " ms.");
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    /**
+     * Register the modules whose data loaded, then open the plugin for commands and events.
+     */
+    private void finishStartup(CompletableFuture<Void> namingStage, CompletableFuture<Void> marketStage, long start) {
+        if (namingEnabled && stageFailed(namingStage, "Naming")) {
+            namingEnabled = false;
+            namingDataManager = null;
+        }
+        if (marketEnabled && stageFailed(marketStage, "Market")) {
+            marketEnabled = false;
+            if (marketDataManager != null) {
+                marketDataManager.close();
+                marketDataManager = null;
+            }
+            transactionLogger = null;
+        }
 
         // Initialize naming module
-        initializeNamingModule();
+        if (namingEnabled) {
+            initializeNamingModule();
+        }
 
         // Initialize market module (optional - requires Vault)
-        initializeMarketModule();
+        if (marketEnabled) {
+            initializeMarketModule();
+        }
 
         // Register main command
         FFClaimsCommand mainCommand = new FFClaimsCommand(this);
@@ -82,21 +218,34 @@ public class FFClaimsPlugin extends JavaPlugin {
         // Register claimsbook command
         getCommand("claimsbook").setExecutor(new ClaimsBookCommand(this));
 
-        getLogger().info("FF-Claims enabled! Naming: " + (namingEnabled ? "ON" : "OFF") +
+        ready = true;
+        getLogger().info("FF-Claims enabled in " + elapsedMillis(start) + " ms! Naming: " + (namingEnabled ? "ON" : "OFF") +
                 ", Market: " + (marketEnabled ? "ON" : "OFF"));
     }
 
-    private void initializeNamingModule() {
-        namingEnabled = configManager.isNamingEnabled();
-        if (!namingEnabled) {
-            getLogger().info("Naming module disabled in config.");
-            return;
+    private boolean stageFailed(CompletableFuture<Void> stage, String module) {
+        if (!stage.isCompletedExceptionally()) {
+            return false;
         }
+        getLogger().log(Level.SEVERE, module + " data failed to load; " + module.toLowerCase() + " module disabled.",
+                stage.exceptionNow());
+        return true;
+    }
 
-        // Initialize naming data
-        namingDataManager = new NamingDataManager(this);
-        namingDataManager.load();
+    /**
+     * Commands land here only while they have no executor: before startup has finished,
+     * or when their module is disabled.
+     */
+    @Override
+    public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        if (ready) {
+            return false;
+        }
+        sender.sendMessage(configManager.getPrefix() + "FF-Claims is still loading, try again in a moment.");
+        return true;
+    }
 
+    private void initializeNamingModule() {
         // Register naming commands
         getCommand("nameclaim").setExecutor(new NameClaimCommand(this));
         getCommand("claimtop").setExecutor(new ClaimTopCommand(this));
@@ -105,10 +254,19 @@ public class FFClaimsPlugin extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new ClaimEntryListener(this), this);
         getServer().getPluginManager().registerEvents(new ClaimsListListener(this), this);
 
+        // Rebuild /claimtop rankings periodically rather than per command
+        int claimTopInterval = Math.max(10, configManager.getClaimTopRefreshInterval());
+        claimLeaderboard = new ClaimLeaderboard(this);
+        claimLeaderboard.runTaskTimer(this, 1L, 20L * claimTopInterval);
+
         // Dynmap integration (optional)
         if (getServer().getPluginManager().isPluginEnabled("dynmap")) {
+            // Markers need claim and world data, so this stage stays on the main thread
+            long start = System.nanoTime();
             dynmapIntegration = new DynmapIntegration(this);
             if (dynmapIntegration.init()) {
+                getServer().getPluginManager().registerEvents(dynmapIntegration, this);
+                logStage("Dynmap markers", start);
                 getLogger().info("Dynmap integration enabled for claim names.");
             } else {
                 dynmapIntegration = null;
@@ -119,19 +277,21 @@ public class FFClaimsPlugin extends JavaPlugin {
         getLogger().info("Naming module loaded with " + namingDataManager.getClaimNames().size() + " named claims.");
     }
 
-    private void initializeMarketModule() {
-        marketEnabled = configManager.isMarketEnabled();
-        if (!marketEnabled) {
+    /**
+     * Check the market's config switch and plugin dependencies.
+     * @return whether the market module should be loaded
+     */
+    private boolean checkMarketDependencies() {
+        if (!configManager.isMarketEnabled()) {
             getLogger().info("Market module disabled in config.");
-            return;
+            return false;
         }
 
         // Check for Vault
         vaultHook = new VaultHook(this);
         if (!vaultHook.isAvailable()) {
             getLogger().warning("Vault economy not found! Market module disabled.");
-            marketEnabled = false;
-            return;
+            return false;
         }
 
         // Check for DualCurrency plugin (claim blocks bought with items, not cash)
@@ -142,16 +302,32 @@ public class FFClaimsPlugin extends JavaPlugin {
             getLogger().info("GP economy mode active - claim block value: $" +
                     griefPreventionHook.getClaimBlockPurchaseCost() + " per block.");
         }
+        return true;
+    }
 
-        // Initialize market data
-        marketDataManager = new MarketDataManager(this);
-        marketDataManager.load();
+    /**
+     * Seed the name cache with the seller and bidder names stored on listings.
+     */
+    private void warmNameCache() {
+        for (SaleData sale : marketDataManager.getAllSales()) {
+            playerNameCache.put(sale.getSellerUUID(), sale.getSellerName());
+        }
+        for (AuctionData auction : marketDataManager.getAllAuctions()) {
+            playerNameCache.put(auction.getSellerUUID(), auction.getSellerName());
+            for (BidData bid : auction.getBids()) {
+                playerNameCache.put(bid.getBidderUUID(), bid.getBidderName());
+            }
+        }
+    }
 
-        // Initialize transaction logger
-        transactionLogger = new TransactionLogger(this);
+    private void initializeMarketModule() {
+        // Listings stored before claim IDs were recorded are matched to their claims here
+        marketDataManager.assignMissingClaimIds(griefPreventionHook);
+        warmNameCache();
 
         // Initialize managers
         signManager = new SignManager(this);
+        signManager.loadPendingSignOps();
         listingManager = new ListingManager(this);
         saleManager = new SaleManager(this);
         auctionManager = new AuctionManager(this);
@@ -161,30 +337,94 @@ public class FFClaimsPlugin extends JavaPlugin {
         getServer().getPluginManager().registerEvents(new MarketSignListener(this), this);
         getServer().getPluginManager().registerEvents(new MarketSignInteractListener(this), this);
         getServer().getPluginManager().registerEvents(new InventoryClickListener(this), this);
+        getServer().getPluginManager().registerEvents(new ClaimDeleteListener(this), this);
+        getServer().getPluginManager().registerEvents(new ListingSignChunkListener(this), this);
 
-        // Start expiration task
-        int interval = configManager.getAuctionExpirationCheckInterval();
+        // Settle auctions as they end
         expirationTask = new AuctionExpirationTask(this);
-        expirationTask.runTaskTimer(this, 20L * interval, 20L * interval);
+        expirationTask.runTaskTimer(this, 1L, 1L);
+
+        // Per-player auction countdowns, if enabled (needs a restart to change)
+        if (configManager.isVirtualCountdownEnabled()) {
+            virtualCountdownRenderer = new VirtualCountdownRenderer(this);
+            getServer().getPluginManager().registerEvents(virtualCountdownRenderer, this);
+            virtualCountdownRenderer.runTaskTimer(this, 20L, 20L);
+        }
+
+        // Start auction sign refresh task
+        int signRefreshInterval = Math.max(1, configManager.getAuctionSignRefreshInterval());
+        signRefreshTask = new AuctionSignRefreshTask(this);
+        signRefreshTask.runTaskTimer(this, 20L * signRefreshInterval, 20L * signRefreshInterval);
+
+        // Start journal compaction task
+        int compactionInterval = Math.max(10, configManager.getMarketCompactionInterval());
+        compactionTask = new MarketCompactionTask(this);
+        compactionTask.runTaskTimer(this, 20L * compactionInterval, 20L * compactionInterval);
 
         getLogger().info("Market module loaded. GriefPrevention and Vault hooks active.");
     }
 
+    private MarketStore createMarketStore(Function<String, World> worlds) {
+        String type = configManager.getMarketStorageType();
+        if (type.equalsIgnoreCase("sqlite")) {
+            if (!SqliteMarketStore.isDriverAvailable()) {
+                getLogger().severe("SQLite driver not found on this server! Falling back to YAML market storage.");
+            } else {
+                SqliteMarketStore store = new SqliteMarketStore(this, persistenceService);
+                try {
+                    store.open(worlds);
+                    return store;
+                } catch (Exception e) {
+                    getLogger().severe("Failed to open market.db: " + e.getMessage() + " Falling back to YAML market storage.");
+                    store.close();
+                }
+            }
+        } else if (!type.equalsIgnoreCase("yaml")) {
+            getLogger().warning("Unknown market storage type '" + type + "', using yaml.");
+        }
+        return new YamlMarketStore(this, persistenceService);
+    }
+
     @Override
     public void onDisable() {
-        // Save naming data
-        if (namingDataManager != null) {
-            namingDataManager.save();
+        // Let loaders that are still running finish before anything is saved or closed
+        if (startup != null && !startup.isDone()) {
+            try {
+                startup.get(configManager.getStorageShutdownTimeout(), TimeUnit.SECONDS);
+            } catch (Exception e) {
+                getLogger().warning("Startup did not finish before shutdown: " + e.getMessage());
+            }
+        }
+
+        // Cancel tasks
+        if (claimLeaderboard != null) {
+            claimLeaderboard.cancel();
+        }
+        if (dynmapIntegration != null) {
+            dynmapIntegration.shutdown();
+        }
+        if (expirationTask != null) {
+            expirationTask.cancel();
+        }
+        if (signRefreshTask != null) {
+            signRefreshTask.cancel();
+        }
+        if (virtualCountdownRenderer != null) {
+            virtualCountdownRenderer.cancel();
+        }
+        if (compactionTask != null) {
+            compactionTask.cancel();
         }
 
-        // Save market data
+        // Save market data (folds the journal into the snapshots)
         if (marketDataManager != null) {
             marketDataManager.save();
+            marketDataManager.close();
         }
 
-        // Cancel tasks
-        if (expirationTask != null) {
-            expirationTask.cancel();
+        // Write anything still dirty and wait for the writer to drain
+        if (persistenceService != null) {
+            persistenceService.shutdown(configManager.getStorageShutdownTimeout());
         }
 
         getLogger().info("FF-Claims disabled.");
@@ -192,6 +432,11 @@ public class FFClaimsPlugin extends JavaPlugin {
 
     public void reload() {
         configManager.loadConfig();
+        claimLookupCache.clear();
+
+        // Make sure pending changes are on disk before re-reading the files
+        persistenceService.flush();
+        persistenceService.awaitPending(configManager.getStorageShutdownTimeout(), TimeUnit.SECONDS);
 
         if (namingDataManager != null) {
             namingDataManager.load();
@@ -199,6 +444,11 @@ public class FFClaimsPlugin extends JavaPlugin {
 
         if (marketDataManager != null) {
             marketDataManager.load();
+            marketDataManager.assignMissingClaimIds(griefPreventionHook);
+        }
+
+        if (transactionLogger != null) {
+            transactionLogger.reload();
         }
 
         getLogger().info("FF-Claims configuration reloaded.");
@@ -218,6 +468,25 @@ public class FFClaimsPlugin extends JavaPlugin {
         return griefPreventionHook;
     }
 
+    public ClaimLookupCache getClaimLookupCache() {
+        return claimLookupCache;
+    }
+
+    public PlayerNameCache getPlayerNameCache() {
+        return playerNameCache;
+    }
+
+    public PersistenceService getPersistenceService() {
+        return persistenceService;
+    }
+
+    /**
+     * Whether startup has finished and every enabled module is registered.
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
     // Naming module getters
     public boolean isNamingEnabled() {
         return namingEnabled;
@@ -231,6 +500,10 @@ public class FFClaimsPlugin extends JavaPlugin {
         return dynmapIntegration;
     }
 
+    public ClaimLeaderboard getClaimLeaderboard() {
+        return claimLeaderboard;
+    }
+
     // Market module getters
     public boolean isMarketEnabled() {
         return marketEnabled;
@@ -252,6 +525,13 @@ public class FFClaimsPlugin extends JavaPlugin {
         return signManager;
     }
 
+    /**
+     * The per-player auction countdown renderer, or null if countdowns are written to the signs.
+     */
+    public VirtualCountdownRenderer getVirtualCountdownRenderer() {
+        return virtualCountdownRenderer;
+    }
+
     public ListingManager getListingManager() {
         return listingManager;
     }
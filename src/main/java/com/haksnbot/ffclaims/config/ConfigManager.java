@@ -45,6 +45,16 @@ public class ConfigManager {
         return config.getBoolean("modules.market", true);
     }
 
+    // ==================== STORAGE ====================
+
+    public long getStorageWriteDelayTicks() {
+        return config.getLong("storage.write-delay-ticks", 20L);
+    }
+
+    public long getStorageShutdownTimeout() {
+        return config.getLong("storage.shutdown-timeout-seconds", 10L);
+    }
+
     // ==================== NAMING MODULE ====================
 
     public int getMaxNameLength() {
@@ -63,6 +73,21 @@ public class ConfigManager {
         return config.getInt("naming.display.fade-out", 10);
     }
 
+    public int getClaimTopRefreshInterval() {
+        return config.getInt("naming.claimtop.refresh-interval", 60);
+    }
+
+    public int getDynmapMarkersPerTick() {
+        return config.getInt("naming.dynmap.markers-per-tick", 250);
+    }
+
+    /**
+     * Marker height to use while a claim's chunk is not loaded, or null to use the claim's depth.
+     */
+    public Integer getDynmapFallbackMarkerY() {
+        return config.isSet("naming.dynmap.fallback-marker-y") ? config.getInt("naming.dynmap.fallback-marker-y") : null;
+    }
+
     // ==================== MARKET MODULE - SALES ====================
 
     public double getMinSalePrice() {
@@ -87,8 +112,34 @@ public class ConfigManager {
         return config.getInt("market.auctions.default-duration-hours", 72);
     }
 
-    public int getAuctionExpirationCheckInterval() {
-        return config.getInt("market.auctions.expiration-check-interval", 30);
+    public int getAuctionSignRefreshInterval() {
+        return config.getInt("market.auctions.sign-refresh-interval", 60);
+    }
+
+    public int getAuctionSignUpdatesPerRefresh() {
+        return config.getInt("market.auctions.sign-updates-per-refresh", 50);
+    }
+
+    public boolean isVirtualCountdownEnabled() {
+        return config.getBoolean("market.auctions.virtual-countdown.enabled", false);
+    }
+
+    public int getVirtualCountdownUpdatesPerPlayer() {
+        return config.getInt("market.auctions.virtual-countdown.updates-per-player", 10);
+    }
+
+    // ==================== MARKET MODULE - STORAGE ====================
+
+    public String getMarketStorageType() {
+        return config.getString("market.storage.type", "yaml");
+    }
+
+    public int getRecentTransactionCacheSize() {
+        return config.getInt("market.storage.recent-transactions-cached", 1000);
+    }
+
+    public int getMarketCompactionInterval() {
+        return config.getInt("market.storage.compaction-interval", 300);
     }
 
     // ==================== MARKET MODULE - SIGNS ====================
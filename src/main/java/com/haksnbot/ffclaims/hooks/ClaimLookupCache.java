@@ -0,0 +1,261 @@
+package com.haksnbot.ffclaims.hooks;
+
+import com.haksnbot.ffclaims.util.LongObjectMap;
+import me.ryanhamshire.GriefPrevention.Claim;
+import me.ryanhamshire.GriefPrevention.events.ClaimChangeEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimCreatedEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
+import me.ryanhamshire.GriefPrevention.events.ClaimTransferEvent;
+import org.bukkit.Chunk;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkUnloadEvent;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Chunk-keyed cache in front of GriefPrevention's claim lookup, for hot paths such as player movement.
+ * Each cached chunk holds the top-level claims that overlap it with their bounds as plain ints,
+ * so a lookup is one primitive map probe plus a few box checks, with no Location copies.
+ * Chunks are filled from GriefPrevention on first use, dropped when a claim event touches them
+ * and forgotten when they unload. Main thread only.
+ */
+public class ClaimLookupCache implements Listener {
+
+    // minX, minY, minZ, maxX, maxY, maxZ per claim (inclusive)
+    private static final int STRIDE = 6;
+    private static final ChunkClaims EMPTY = new ChunkClaims(new Claim[0], new int[0]);
+
+    private final GriefPreventionHook griefPreventionHook;
+    private final Map<UUID, LongObjectMap<ChunkClaims>> worlds = new HashMap<>();
+
+    private long hits;
+    private long misses;
+    // Bumped whenever cached claims may have changed
+    private int generation;
+
+    public ClaimLookupCache(GriefPreventionHook griefPreventionHook) {
+        this.griefPreventionHook = griefPreventionHook;
+    }
+
+    /**
+     * Get the claim at a location, returning the subdivision if the location is inside one.
+     * Same result as {@link GriefPreventionHook#getClaimAt(Location, boolean)}.
+     */
+    public Claim getClaimAt(Location location, boolean ignoreHeight) {
+        World world = location.getWorld();
+        if (world == null) {
+            return null;
+        }
+
+        int x = location.getBlockX();
+        int y = location.getBlockY();
+        int z = location.getBlockZ();
+        LongObjectMap<ChunkClaims> chunks = worlds.computeIfAbsent(world.getUID(), k -> new LongObjectMap<>());
+        ChunkClaims cached = chunk(world, chunks, x >> 4, z >> 4);
+
+        Claim[] claims = cached.claims();
+        int[] bounds = cached.bounds();
+        for (int i = 0; i < claims.length; i++) {
+            int b = i * STRIDE;
+            if (x < bounds[b] || x > bounds[b + 3] || z < bounds[b + 2] || z > bounds[b + 5]) {
+                continue;
+            }
+            if (!ignoreHeight && (y < bounds[b + 1] || y > bounds[b + 4])) {
+                continue;
+            }
+
+            Claim claim = claims[i];
+            if (!claim.inDataStore) {
+                // Removed without an event reaching us; rebuild this chunk and ask again
+                chunks.remove(Chunk.getChunkKey(x >> 4, z >> 4));
+                generation++;
+                return griefPreventionHook.getClaimAt(location, ignoreHeight);
+            }
+            if (claim.children != null) {
+                for (Claim child : claim.children) {
+                    if (child.inDataStore && child.contains(location, ignoreHeight, false)) {
+                        return child;
+                    }
+                }
+            }
+            return claim;
+        }
+        return null;
+    }
+
+    /**
+     * Chebyshev distance in blocks from a column to the nearest claim footprint, looking at
+     * claims up to {@code chunkRadius} chunks away. Every column closer than the result is
+     * outside all claims at any height. Returns 0 if the column is under a claim, and at most
+     * the distance to the edge of the searched area.
+     */
+    public int distanceToNearestClaim(World world, int x, int z, int chunkRadius) {
+        LongObjectMap<ChunkClaims> chunks = worlds.computeIfAbsent(world.getUID(), k -> new LongObjectMap<>());
+        int minChunkX = (x >> 4) - chunkRadius;
+        int maxChunkX = (x >> 4) + chunkRadius;
+        int minChunkZ = (z >> 4) - chunkRadius;
+        int maxChunkZ = (z >> 4) + chunkRadius;
+
+        // Claims beyond the searched chunks are unknown
+        int distance = Math.min(
+                Math.min(x - (minChunkX << 4), (maxChunkX << 4) + 15 - x),
+                Math.min(z - (minChunkZ << 4), (maxChunkZ << 4) + 15 - z)) + 1;
+
+        for (int chunkX = minChunkX; chunkX <= maxChunkX; chunkX++) {
+            for (int chunkZ = minChunkZ; chunkZ <= maxChunkZ; chunkZ++) {
+                int[] bounds = chunk(world, chunks, chunkX, chunkZ).bounds();
+                for (int b = 0; b < bounds.length; b += STRIDE) {
+                    int dx = Math.max(0, Math.max(bounds[b] - x, x - bounds[b + 3]));
+                    int dz = Math.max(0, Math.max(bounds[b + 2] - z, z - bounds[b + 5]));
+                    distance = Math.min(distance, Math.max(dx, dz));
+                }
+            }
+        }
+        return distance;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    private ChunkClaims chunk(World world, LongObjectMap<ChunkClaims> chunks, int chunkX, int chunkZ) {
+        long key = Chunk.getChunkKey(chunkX, chunkZ);
+        ChunkClaims cached = chunks.get(key);
+        if (cached == null) {
+            misses++;
+            cached = load(world, chunkX, chunkZ);
+            chunks.put(key, cached);
+        } else {
+            hits++;
+        }
+        return cached;
+    }
+
+    /**
+     * Collect the top-level claims of one world that overlap a chunk.
+     */
+    private ChunkClaims load(World world, int chunkX, int chunkZ) {
+        Collection<Claim> inChunk = griefPreventionHook.getClaimsInChunk(chunkX, chunkZ);
+        if (inChunk == null || inChunk.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<Claim> claims = new ArrayList<>(inChunk.size());
+        List<int[]> boxes = new ArrayList<>(inChunk.size());
+        for (Claim claim : inChunk) {
+            if (!claim.inDataStore || claim.parent != null) {
+                continue;
+            }
+            Location lesser = claim.getLesserBoundaryCorner();
+            Location greater = claim.getGreaterBoundaryCorner();
+            // GriefPrevention's chunk index is shared by all worlds
+            if (lesser == null || greater == null || !world.equals(lesser.getWorld())) {
+                continue;
+            }
+            // Top-level claims reach from their depth up to the build limit
+            claims.add(claim);
+            boxes.add(new int[]{lesser.getBlockX(), lesser.getBlockY(), lesser.getBlockZ(),
+                    greater.getBlockX(), world.getMaxHeight(), greater.getBlockZ()});
+        }
+        if (claims.isEmpty()) {
+            return EMPTY;
+        }
+
+        int[] bounds = new int[claims.size() * STRIDE];
+        for (int i = 0; i < boxes.size(); i++) {
+            System.arraycopy(boxes.get(i), 0, bounds, i * STRIDE, STRIDE);
+        }
+        return new ChunkClaims(claims.toArray(new Claim[0]), bounds);
+    }
+
+    /**
+     * Drop the cached chunks a claim overlaps, so they are rebuilt on next use.
+     */
+    public void invalidate(Claim claim) {
+        if (claim == null) {
+            return;
+        }
+        generation++;
+        Location lesser = claim.getLesserBoundaryCorner();
+        Location greater = claim.getGreaterBoundaryCorner();
+        if (lesser == null || greater == null || lesser.getWorld() == null) {
+            return;
+        }
+        LongObjectMap<ChunkClaims> chunks = worlds.get(lesser.getWorld().getUID());
+        if (chunks == null) {
+            return;
+        }
+        for (int chunkX = lesser.getBlockX() >> 4; chunkX <= greater.getBlockX() >> 4; chunkX++) {
+            for (int chunkZ = lesser.getBlockZ() >> 4; chunkZ <= greater.getBlockZ() >> 4; chunkZ++) {
+                chunks.remove(Chunk.getChunkKey(chunkX, chunkZ));
+            }
+        }
+    }
+
+    public void clear() {
+        worlds.clear();
+        generation++;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    public long getMisses() {
+        return misses;
+    }
+
+    public int getCachedChunks() {
+        int count = 0;
+        for (LongObjectMap<ChunkClaims> chunks : worlds.values()) {
+            count += chunks.size();
+        }
+        return count;
+    }
+
+    // ==================== EVENTS ====================
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimCreated(ClaimCreatedEvent event) {
+        invalidate(event.getClaim());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClaimDeleted(ClaimDeletedEvent event) {
+        invalidate(event.getClaim());
+    }
+
+    /**
+     * Resizes and depth extensions.
+     */
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimChanged(ClaimChangeEvent event) {
+        invalidate(event.getFrom());
+        invalidate(event.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onClaimTransferred(ClaimTransferEvent event) {
+        invalidate(event.getClaim());
+    }
+
+    @EventHandler
+    public void onChunkUnload(ChunkUnloadEvent event) {
+        LongObjectMap<ChunkClaims> chunks = worlds.get(event.getWorld().getUID());
+        if (chunks != null) {
+            chunks.remove(event.getChunk().getChunkKey());
+        }
+    }
+
+    private record ChunkClaims(Claim[] claims, int[] bounds) {
+    }
+}
@@ -44,6 +44,14 @@ public class GriefPreventionHook {
         return griefPrevention.dataStore.getClaimAt(location, ignoreHeight, null);
     }
 
+    /**
+     * Get the top-level claims overlapping a chunk. GriefPrevention's chunk index is not
+     * per world, so the result can include claims in other worlds.
+     */
+    public Collection<Claim> getClaimsInChunk(int chunkX, int chunkZ) {
+        return griefPrevention.dataStore.getClaims(chunkX, chunkZ);
+    }
+
     /**
      * Get a claim by its ID.
      */
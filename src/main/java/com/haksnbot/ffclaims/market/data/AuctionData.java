@@ -1,17 +1,30 @@
 package com.haksnbot.ffclaims.market.data;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.function.Function;
 
 public class AuctionData {
 
+    // Highest amount first; an earlier bid wins a tie
+    private static final Comparator<BidData> BID_ORDER = Comparator.comparingDouble(BidData::getAmount).reversed()
+            .thenComparingLong(BidData::getTimestamp)
+            .thenComparing(BidData::getBidderUUID);
+
     private final String id;
     private final UUID sellerUUID;
     private final String sellerName;
@@ -19,15 +32,20 @@ public class AuctionData {
     private final double buyNowPrice;
     private final Location signLocation;
     private final Location claimLocation;
+    private final long claimId;
     private final long created;
     private final long expires;
     private final int area;
     private final String dimensions;
-    private final List<BidData> bids;
+    // Sealed bid book: each bidder's current bid, kept in rank order
+    private final TreeSet<BidData> bids = new TreeSet<>(BID_ORDER);
+    private final Map<UUID, BidData> bidsByBidder = new HashMap<>();
     private boolean ended;
+    // Last formatted time remaining, replaced once it goes stale
+    private volatile FormattedTime formattedTime;
 
     public AuctionData(String id, UUID sellerUUID, String sellerName, double minimumBid,
-                       double buyNowPrice, Location signLocation, Location claimLocation,
+                       double buyNowPrice, Location signLocation, Location claimLocation, long claimId,
                        long created, long expires, int area, String dimensions) {
         this.id = id;
         this.sellerUUID = sellerUUID;
@@ -36,11 +54,11 @@ public class AuctionData {
         this.buyNowPrice = buyNowPrice;
         this.signLocation = signLocation;
         this.claimLocation = claimLocation;
+        this.claimId = claimId;
         this.created = created;
         this.expires = expires;
         this.area = area;
         this.dimensions = dimensions;
-        this.bids = new ArrayList<>();
         this.ended = false;
     }
 
@@ -76,6 +94,14 @@ public class AuctionData {
         return claimLocation;
     }
 
+    /**
+     * GriefPrevention ID of the listed claim, or {@link MarketDataManager#UNKNOWN_CLAIM_ID}
+     * for listings stored before IDs were recorded.
+     */
+    public long getClaimId() {
+        return claimId;
+    }
+
     public long getCreated() {
         return created;
     }
@@ -92,8 +118,15 @@ public class AuctionData {
         return dimensions;
     }
 
-    public List<BidData> getBids() {
-        return new ArrayList<>(bids);
+    /**
+     * Current bids, highest first. Read-only view.
+     */
+    public Collection<BidData> getBids() {
+        return Collections.unmodifiableCollection(bids);
+    }
+
+    public int getBidCount() {
+        return bids.size();
     }
 
     public boolean isEnded() {
@@ -108,25 +141,52 @@ public class AuctionData {
         return System.currentTimeMillis() >= expires;
     }
 
+    /**
+     * Record a bid, replacing the bidder's previous bid if they had one.
+     */
     public void addBid(BidData bid) {
+        BidData previous = bidsByBidder.put(bid.getBidderUUID(), bid);
+        if (previous != null) {
+            bids.remove(previous);
+        }
         bids.add(bid);
     }
 
+    /**
+     * Check whether this exact bid (same bidder, amount and time) is already recorded.
+     */
+    public boolean hasBid(BidData bid) {
+        BidData existing = bidsByBidder.get(bid.getBidderUUID());
+        return existing != null &&
+                existing.getAmount() == bid.getAmount() &&
+                existing.getTimestamp() == bid.getTimestamp();
+    }
+
+    /**
+     * Create a detached copy whose bid list can be read off the main thread.
+     */
+    public AuctionData copy() {
+        return withClaimId(claimId);
+    }
+
+    /**
+     * Copy of this auction, bids included, with its claim ID filled in.
+     */
+    public AuctionData withClaimId(long claimId) {
+        AuctionData copy = new AuctionData(id, sellerUUID, sellerName, minimumBid, buyNowPrice,
+                signLocation, claimLocation, claimId, created, expires, area, dimensions);
+        copy.bids.addAll(bids);
+        copy.bidsByBidder.putAll(bidsByBidder);
+        copy.ended = ended;
+        return copy;
+    }
+
     public BidData getHighestBid() {
-        return bids.stream()
-                .max(Comparator.comparingDouble(BidData::getAmount))
-                .orElse(null);
+        return bids.isEmpty() ? null : bids.first();
     }
 
     public BidData getSecondHighestBid() {
-        if (bids.size() < 2) {
-            return null;
-        }
-        return bids.stream()
-                .sorted(Comparator.comparingDouble(BidData::getAmount).reversed())
-                .skip(1)
-                .findFirst()
-                .orElse(null);
+        return bids.isEmpty() ? null : bids.higher(bids.first());
     }
 
     public double getVickreyPrice() {
@@ -141,33 +201,70 @@ public class AuctionData {
         return Math.max(0, expires - System.currentTimeMillis());
     }
 
+    /**
+     * Time remaining as shown on signs and menus, e.g. "2d 4h". The text is kept until it
+     * would read differently, so repeated calls do not build new strings. Thread-safe.
+     */
     public String getTimeRemainingFormatted() {
-        long remaining = getTimeRemaining();
+        long now = System.currentTimeMillis();
+        FormattedTime cached = formattedTime;
+        if (cached != null && now < cached.changesAt()) {
+            return cached.text();
+        }
+
+        long remaining = expires - now;
+        String text;
+        if (remaining <= 0) {
+            text = "Ended";
+        } else {
+            long seconds = remaining / 1000;
+            long minutes = seconds / 60;
+            long hours = minutes / 60;
+            long days = hours / 24;
+
+            if (days > 0) {
+                text = days + "d " + (hours % 24) + "h";
+            } else if (hours > 0) {
+                text = hours + "h " + (minutes % 60) + "m";
+            } else if (minutes > 0) {
+                text = minutes + "m";
+            } else {
+                text = seconds + "s";
+            }
+        }
+        formattedTime = new FormattedTime(text, timeRemainingChangesAt(now));
+        return text;
+    }
+
+    /**
+     * When {@link #getTimeRemainingFormatted()} will next read differently: it shows whole hours
+     * while days remain, whole minutes while minutes remain, and seconds after that.
+     * @return epoch millis, or {@link Long#MAX_VALUE} once the auction has ended
+     */
+    public long getTimeRemainingChangesAt() {
+        return timeRemainingChangesAt(System.currentTimeMillis());
+    }
+
+    private long timeRemainingChangesAt(long now) {
+        long remaining = expires - now;
         if (remaining <= 0) {
-            return "Ended";
+            return Long.MAX_VALUE;
         }
 
-        long seconds = remaining / 1000;
-        long minutes = seconds / 60;
-        long hours = minutes / 60;
-        long days = hours / 24;
-
-        if (days > 0) {
-            return days + "d " + (hours % 24) + "h";
-        } else if (hours > 0) {
-            return hours + "h " + (minutes % 60) + "m";
-        } else if (minutes > 0) {
-            return minutes + "m";
+        long unit;
+        if (remaining >= 24 * 60 * 60 * 1000L) {
+            unit = 60 * 60 * 1000L;
+        } else if (remaining >= 60 * 1000L) {
+            unit = 60 * 1000L;
         } else {
-            return seconds + "s";
+            unit = 1000L;
         }
+        // The last second counts down to "0s", then "Ended" once nothing remains
+        return now + Math.min(remaining % unit + 1, remaining);
     }
 
     public BidData getBidByPlayer(UUID playerUUID) {
-        return bids.stream()
-                .filter(bid -> bid.getBidderUUID().equals(playerUUID))
-                .findFirst()
-                .orElse(null);
+        return bidsByBidder.get(playerUUID);
     }
 
     public void save(ConfigurationSection section) {
@@ -194,15 +291,23 @@ public class AuctionData {
         claimSection.set("x", claimLocation.getBlockX());
         claimSection.set("y", claimLocation.getBlockY());
         claimSection.set("z", claimLocation.getBlockZ());
+        if (claimId != MarketDataManager.UNKNOWN_CLAIM_ID) {
+            claimSection.set("id", claimId);
+        }
 
         // Bids
-        for (int i = 0; i < bids.size(); i++) {
-            ConfigurationSection bidSection = section.createSection("bids." + i);
-            bids.get(i).save(bidSection);
+        int i = 0;
+        for (BidData bid : bids) {
+            ConfigurationSection bidSection = section.createSection("bids." + i++);
+            bid.save(bidSection);
         }
     }
 
-    public static AuctionData load(String id, ConfigurationSection section) {
+    /**
+     * Load a listing saved by {@link #save(ConfigurationSection)}, resolving worlds by name.
+     * Returns null if the section is invalid or one of its worlds is not loaded.
+     */
+    public static AuctionData load(String id, ConfigurationSection section, Function<String, World> worlds) {
         if (section == null) {
             return null;
         }
@@ -220,18 +325,19 @@ public class AuctionData {
 
             // Sign location
             ConfigurationSection signSection = section.getConfigurationSection("sign");
-            Location signLocation = loadLocation(signSection);
+            Location signLocation = loadLocation(signSection, worlds);
 
             // Claim location
             ConfigurationSection claimSection = section.getConfigurationSection("claim");
-            Location claimLocation = loadLocation(claimSection);
+            Location claimLocation = loadLocation(claimSection, worlds);
 
             if (signLocation == null || claimLocation == null) {
                 return null;
             }
+            long claimId = claimSection.getLong("id", MarketDataManager.UNKNOWN_CLAIM_ID);
 
             AuctionData auction = new AuctionData(id, sellerUUID, sellerName, minimumBid,
-                    buyNowPrice, signLocation, claimLocation, created, expires, area, dimensions);
+                    buyNowPrice, signLocation, claimLocation, claimId, created, expires, area, dimensions);
             auction.setEnded(ended);
 
             // Load bids
@@ -252,13 +358,97 @@ public class AuctionData {
         }
     }
 
-    private static Location loadLocation(ConfigurationSection section) {
+    /**
+     * Write this auction, including its bids, as a compact binary record (used by the market journal).
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeLong(sellerUUID.getMostSignificantBits());
+        out.writeLong(sellerUUID.getLeastSignificantBits());
+        out.writeUTF(sellerName);
+        out.writeDouble(minimumBid);
+        out.writeDouble(buyNowPrice);
+        out.writeLong(created);
+        out.writeLong(expires);
+        out.writeInt(area);
+        out.writeUTF(dimensions);
+        out.writeBoolean(ended);
+        writeLocation(out, signLocation);
+        writeLocation(out, claimLocation);
+        out.writeLong(claimId);
+
+        out.writeInt(bids.size());
+        for (BidData bid : bids) {
+            bid.write(out);
+        }
+    }
+
+    /**
+     * Read an auction written by {@link #write(DataOutput)}, or by an older version without the
+     * claim ID if {@code withClaimId} is false.
+     * Returns null if one of its worlds is not loaded.
+     */
+    public static AuctionData read(DataInput in, Function<String, World> worlds, boolean withClaimId) throws IOException {
+        String id = in.readUTF();
+        UUID sellerUUID = new UUID(in.readLong(), in.readLong());
+        String sellerName = in.readUTF();
+        double minimumBid = in.readDouble();
+        double buyNowPrice = in.readDouble();
+        long created = in.readLong();
+        long expires = in.readLong();
+        int area = in.readInt();
+        String dimensions = in.readUTF();
+        boolean ended = in.readBoolean();
+        Location signLocation = readLocation(in, worlds);
+        Location claimLocation = readLocation(in, worlds);
+        long claimId = withClaimId ? in.readLong() : MarketDataManager.UNKNOWN_CLAIM_ID;
+
+        int bidCount = in.readInt();
+        List<BidData> bids = new ArrayList<>(bidCount);
+        for (int i = 0; i < bidCount; i++) {
+            bids.add(BidData.read(in));
+        }
+
+        if (signLocation == null || claimLocation == null) {
+            return null;
+        }
+
+        AuctionData auction = new AuctionData(id, sellerUUID, sellerName, minimumBid,
+                buyNowPrice, signLocation, claimLocation, claimId, created, expires, area, dimensions);
+        auction.setEnded(ended);
+        for (BidData bid : bids) {
+            auction.addBid(bid);
+        }
+        return auction;
+    }
+
+    private static void writeLocation(DataOutput out, Location location) throws IOException {
+        out.writeUTF(location.getWorld().getName());
+        out.writeInt(location.getBlockX());
+        out.writeInt(location.getBlockY());
+        out.writeInt(location.getBlockZ());
+    }
+
+    private static Location readLocation(DataInput in, Function<String, World> worlds) throws IOException {
+        String worldName = in.readUTF();
+        int x = in.readInt();
+        int y = in.readInt();
+        int z = in.readInt();
+
+        World world = worldName != null ? worlds.apply(worldName) : null;
+        if (world == null) {
+            return null;
+        }
+        return new Location(world, x, y, z);
+    }
+
+    private static Location loadLocation(ConfigurationSection section, Function<String, World> worlds) {
         if (section == null) {
             return null;
         }
 
         String worldName = section.getString("world");
-        World world = Bukkit.getWorld(worldName);
+        World world = worldName != null ? worlds.apply(worldName) : null;
         if (world == null) {
             return null;
         }
@@ -273,4 +463,7 @@ public class AuctionData {
     public static String generateId() {
         return "auction_" + UUID.randomUUID().toString().substring(0, 8);
     }
+
+    private record FormattedTime(String text, long changesAt) {
+    }
 }
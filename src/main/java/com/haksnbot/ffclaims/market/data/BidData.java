@@ -2,6 +2,9 @@ package com.haksnbot.ffclaims.market.data;
 
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
 
 public class BidData {
@@ -41,6 +44,22 @@ public class BidData {
         section.set("timestamp", timestamp);
     }
 
+    public void write(DataOutput out) throws IOException {
+        out.writeLong(bidderUUID.getMostSignificantBits());
+        out.writeLong(bidderUUID.getLeastSignificantBits());
+        out.writeUTF(bidderName);
+        out.writeDouble(amount);
+        out.writeLong(timestamp);
+    }
+
+    public static BidData read(DataInput in) throws IOException {
+        UUID bidderUUID = new UUID(in.readLong(), in.readLong());
+        String bidderName = in.readUTF();
+        double amount = in.readDouble();
+        long timestamp = in.readLong();
+        return new BidData(bidderUUID, bidderName, amount, timestamp);
+    }
+
     public static BidData load(ConfigurationSection section) {
         if (section == null) {
             return null;
@@ -1,99 +1,170 @@
 package com.haksnbot.ffclaims.market.data;
 
+import com.haksnbot.ffclaims.hooks.GriefPreventionHook;
+import com.haksnbot.ffclaims.util.BlockPositionMap;
+import com.haksnbot.ffclaims.util.LongObjectMap;
+import org.bukkit.Bukkit;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.World;
+import org.bukkit.block.Block;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.io.File;
-import java.io.IOException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
+/**
+ * Holds all active listings in memory and indexes them.
+ * Every mutation is passed on to the configured {@link MarketStore}.
+ */
 public class MarketDataManager {
 
+    /**
+     * Claim ID of listings stored before claim IDs were recorded, until {@link #assignMissingClaimIds} runs.
+     */
+    public static final long UNKNOWN_CLAIM_ID = -1;
+
     private final JavaPlugin plugin;
-    private final File salesFile;
-    private final File auctionsFile;
+    private final MarketStore store;
 
     private final Map<String, SaleData> sales = new ConcurrentHashMap<>();
     private final Map<String, AuctionData> auctions = new ConcurrentHashMap<>();
 
-    // Index by sign location for quick lookup
-    private final Map<String, String> signToSaleId = new ConcurrentHashMap<>();
-    private final Map<String, String> signToAuctionId = new ConcurrentHashMap<>();
+    // Index by sign position for quick, allocation-free lookup (main thread only)
+    private final BlockPositionMap<SaleData> signToSale = new BlockPositionMap<>();
+    private final BlockPositionMap<AuctionData> signToAuction = new BlockPositionMap<>();
+
+    // Index by GriefPrevention claim ID (main thread only)
+    private final LongObjectMap<SaleData> claimToSale = new LongObjectMap<>();
+    private final LongObjectMap<AuctionData> claimToAuction = new LongObjectMap<>();
+
+    // Auction IDs by sign world and chunk key, so a loaded chunk's signs can be found (main thread only)
+    private final Map<UUID, LongObjectMap<Set<String>>> auctionsByChunk = new HashMap<>();
+
+    // Listing IDs by seller and by bidder (main thread only)
+    private final Map<UUID, Set<String>> salesBySeller = new HashMap<>();
+    private final Map<UUID, Set<String>> auctionsBySeller = new HashMap<>();
+    private final Map<UUID, Set<String>> auctionsByBidder = new HashMap<>();
+
+    // Auctions waiting to be settled, soonest deadline first (main thread only)
+    private final TreeSet<Deadline> expiryQueue = new TreeSet<>(
+            Comparator.comparingLong(Deadline::time).thenComparing(Deadline::auctionId));
+    private final Map<String, Deadline> deadlines = new HashMap<>();
 
-    public MarketDataManager(JavaPlugin plugin) {
+    public MarketDataManager(JavaPlugin plugin, MarketStore store) {
         this.plugin = plugin;
-        this.salesFile = new File(plugin.getDataFolder(), "market-sales.yml");
-        this.auctionsFile = new File(plugin.getDataFolder(), "market-auctions.yml");
+        this.store = store;
     }
 
-    public void load() {
-        loadSales();
-        loadAuctions();
+    public MarketStore getStore() {
+        return store;
     }
 
-    public void save() {
-        saveSales();
-        saveAuctions();
+    public void load() {
+        load(Bukkit::getWorld);
     }
 
-    // ==================== SALES ====================
-
-    private void loadSales() {
+    /**
+     * Load every listing, resolving worlds through the given lookup.
+     * Safe to call off the main thread as long as nothing else uses this manager yet.
+     */
+    public void load(Function<String, World> worlds) {
         sales.clear();
-        signToSaleId.clear();
-
-        if (!salesFile.exists()) {
-            return;
-        }
-
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(salesFile);
-        ConfigurationSection listingsSection = config.getConfigurationSection("listings");
+        signToSale.clear();
+        auctions.clear();
+        signToAuction.clear();
+        claimToSale.clear();
+        claimToAuction.clear();
+        salesBySeller.clear();
+        auctionsBySeller.clear();
+        auctionsByBidder.clear();
+        auctionsByChunk.clear();
+        expiryQueue.clear();
+        deadlines.clear();
+
+        store.loadListings(worlds, sale -> {
+            sales.put(sale.getId(), sale);
+            indexSale(sale);
+        }, auction -> {
+            auctions.put(auction.getId(), auction);
+            indexAuction(auction);
+        });
+
+        plugin.getLogger().info("Loaded " + sales.size() + " sale listings and " +
+                auctions.size() + " auction listings (" + store.getType() + " storage).");
+    }
 
-        if (listingsSection == null) {
-            return;
+    /**
+     * Look up the claim of listings that were stored without a claim ID and store the ID.
+     * Needs GriefPrevention, so it runs on the main thread after loading.
+     */
+    public void assignMissingClaimIds(GriefPreventionHook gpHook) {
+        int assigned = 0;
+        for (SaleData sale : new ArrayList<>(sales.values())) {
+            if (sale.getClaimId() == UNKNOWN_CLAIM_ID) {
+                Long claimId = gpHook.getClaimId(gpHook.getClaimAt(sale.getClaimLocation()));
+                if (claimId != null) {
+                    SaleData linked = sale.withClaimId(claimId);
+                    sales.put(linked.getId(), linked);
+                    indexSale(linked);
+                    store.saveSale(linked);
+                    assigned++;
+                }
+            }
         }
-
-        for (String id : listingsSection.getKeys(false)) {
-            SaleData sale = SaleData.load(id, listingsSection.getConfigurationSection(id));
-            if (sale != null) {
-                sales.put(id, sale);
-                signToSaleId.put(locationKey(sale.getSignLocation()), id);
+        for (AuctionData auction : new ArrayList<>(auctions.values())) {
+            if (auction.getClaimId() == UNKNOWN_CLAIM_ID) {
+                Long claimId = gpHook.getClaimId(gpHook.getClaimAt(auction.getClaimLocation()));
+                if (claimId != null) {
+                    AuctionData linked = auction.withClaimId(claimId);
+                    auctions.put(linked.getId(), linked);
+                    indexAuction(linked);
+                    store.saveAuction(linked);
+                    assigned++;
+                }
             }
         }
 
-        plugin.getLogger().info("Loaded " + sales.size() + " sale listings.");
+        if (assigned > 0) {
+            plugin.getLogger().info("Recorded claim IDs for " + assigned + " older listings.");
+        }
     }
 
-    private void saveSales() {
-        YamlConfiguration config = new YamlConfiguration();
-        ConfigurationSection listingsSection = config.createSection("listings");
+    /**
+     * Make the stored listings compact and durable.
+     */
+    public void save() {
+        store.checkpoint(sales.values(), auctions.values());
+    }
 
-        for (SaleData sale : sales.values()) {
-            ConfigurationSection saleSection = listingsSection.createSection(sale.getId());
-            sale.save(saleSection);
-        }
+    /**
+     * Periodic variant of {@link #save()}.
+     */
+    public void compact() {
+        save();
+    }
 
-        try {
-            config.save(salesFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save sales data: " + e.getMessage());
-        }
+    /**
+     * Release the store once every queued write has been applied.
+     */
+    public void close() {
+        store.close();
     }
 
+    // ==================== SALES ====================
+
     public void addSale(SaleData sale) {
         sales.put(sale.getId(), sale);
-        signToSaleId.put(locationKey(sale.getSignLocation()), sale.getId());
-        saveSales();
+        indexSale(sale);
+        store.saveSale(sale);
     }
 
     public void removeSale(String id) {
         SaleData sale = sales.remove(id);
         if (sale != null) {
-            signToSaleId.remove(locationKey(sale.getSignLocation()));
-            saveSales();
+            unindexSale(sale);
+            store.removeSale(id);
         }
     }
 
@@ -102,8 +173,11 @@ public class MarketDataManager {
     }
 
     public SaleData getSaleBySign(Location signLocation) {
-        String id = signToSaleId.get(locationKey(signLocation));
-        return id != null ? sales.get(id) : null;
+        return signToSale.get(signLocation);
+    }
+
+    public SaleData getSaleBySign(Block sign) {
+        return signToSale.get(sign);
     }
 
     public Collection<SaleData> getAllSales() {
@@ -111,76 +185,41 @@ public class MarketDataManager {
     }
 
     public List<SaleData> getSalesBySeller(UUID sellerUUID) {
-        List<SaleData> result = new ArrayList<>();
-        for (SaleData sale : sales.values()) {
-            if (sale.getSellerUUID().equals(sellerUUID)) {
-                result.add(sale);
-            }
-        }
-        return result;
+        return lookup(salesBySeller, sellerUUID, sales);
     }
 
     // ==================== AUCTIONS ====================
 
-    private void loadAuctions() {
-        auctions.clear();
-        signToAuctionId.clear();
-
-        if (!auctionsFile.exists()) {
-            return;
-        }
-
-        YamlConfiguration config = YamlConfiguration.loadConfiguration(auctionsFile);
-        ConfigurationSection listingsSection = config.getConfigurationSection("listings");
-
-        if (listingsSection == null) {
-            return;
-        }
-
-        for (String id : listingsSection.getKeys(false)) {
-            AuctionData auction = AuctionData.load(id, listingsSection.getConfigurationSection(id));
-            if (auction != null) {
-                auctions.put(id, auction);
-                signToAuctionId.put(locationKey(auction.getSignLocation()), id);
-            }
-        }
-
-        plugin.getLogger().info("Loaded " + auctions.size() + " auction listings.");
-    }
-
-    private void saveAuctions() {
-        YamlConfiguration config = new YamlConfiguration();
-        ConfigurationSection listingsSection = config.createSection("listings");
-
-        for (AuctionData auction : auctions.values()) {
-            ConfigurationSection auctionSection = listingsSection.createSection(auction.getId());
-            auction.save(auctionSection);
-        }
-
-        try {
-            config.save(auctionsFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save auctions data: " + e.getMessage());
-        }
-    }
-
     public void addAuction(AuctionData auction) {
         auctions.put(auction.getId(), auction);
-        signToAuctionId.put(locationKey(auction.getSignLocation()), auction.getId());
-        saveAuctions();
+        indexAuction(auction);
+        store.saveAuction(auction);
     }
 
     public void removeAuction(String id) {
         AuctionData auction = auctions.remove(id);
         if (auction != null) {
-            signToAuctionId.remove(locationKey(auction.getSignLocation()));
-            saveAuctions();
+            unindexAuction(auction);
+            store.removeAuction(id);
         }
     }
 
     public void updateAuction(AuctionData auction) {
-        auctions.put(auction.getId(), auction);
-        saveAuctions();
+        AuctionData previous = auctions.put(auction.getId(), auction);
+        if (previous != null && previous != auction) {
+            unindexAuction(previous);
+        }
+        indexAuction(auction);
+        store.saveAuction(auction);
+    }
+
+    /**
+     * Record a new bid on an auction. Only the bid itself is stored.
+     */
+    public void addBid(AuctionData auction, BidData bid) {
+        auction.addBid(bid);
+        addToIndex(auctionsByBidder, bid.getBidderUUID(), auction.getId());
+        store.addBid(auction, bid);
     }
 
     public AuctionData getAuction(String id) {
@@ -188,28 +227,42 @@ public class MarketDataManager {
     }
 
     public AuctionData getAuctionBySign(Location signLocation) {
-        String id = signToAuctionId.get(locationKey(signLocation));
-        return id != null ? auctions.get(id) : null;
+        return signToAuction.get(signLocation);
+    }
+
+    public AuctionData getAuctionBySign(Block sign) {
+        return signToAuction.get(sign);
     }
 
     public Collection<AuctionData> getAllAuctions() {
         return Collections.unmodifiableCollection(auctions.values());
     }
 
-    public List<AuctionData> getActiveAuctions() {
-        List<AuctionData> result = new ArrayList<>();
-        for (AuctionData auction : auctions.values()) {
-            if (!auction.isEnded() && !auction.isExpired()) {
-                result.add(auction);
-            }
+    /**
+     * Auctions whose sign is in the given chunk.
+     */
+    public List<AuctionData> getAuctionsInChunk(World world, long chunkKey) {
+        LongObjectMap<Set<String>> chunks = auctionsByChunk.get(world.getUID());
+        Set<String> ids = chunks != null ? chunks.get(chunkKey) : null;
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<AuctionData> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            result.add(auctions.get(id));
         }
         return result;
     }
 
-    public List<AuctionData> getExpiredAuctions() {
+    public boolean hasAuctionsInChunk(World world, long chunkKey) {
+        LongObjectMap<Set<String>> chunks = auctionsByChunk.get(world.getUID());
+        return chunks != null && chunks.containsKey(chunkKey);
+    }
+
+    public List<AuctionData> getActiveAuctions() {
         List<AuctionData> result = new ArrayList<>();
         for (AuctionData auction : auctions.values()) {
-            if (!auction.isEnded() && auction.isExpired()) {
+            if (!auction.isEnded() && !auction.isExpired()) {
                 result.add(auction);
             }
         }
@@ -217,54 +270,188 @@ public class MarketDataManager {
     }
 
     public List<AuctionData> getAuctionsBySeller(UUID sellerUUID) {
-        List<AuctionData> result = new ArrayList<>();
-        for (AuctionData auction : auctions.values()) {
-            if (auction.getSellerUUID().equals(sellerUUID)) {
-                result.add(auction);
-            }
-        }
-        return result;
+        return lookup(auctionsBySeller, sellerUUID, auctions);
     }
 
     public List<AuctionData> getAuctionsByBidder(UUID bidderUUID) {
-        List<AuctionData> result = new ArrayList<>();
-        for (AuctionData auction : auctions.values()) {
-            if (auction.getBidByPlayer(bidderUUID) != null) {
-                result.add(auction);
+        return lookup(auctionsByBidder, bidderUUID, auctions);
+    }
+
+    // ==================== EXPIRATION ====================
+
+    /**
+     * Whether any auction is due for settlement. Only looks at the head of the queue.
+     */
+    public boolean hasDueAuctions(long now) {
+        return !expiryQueue.isEmpty() && expiryQueue.first().time() <= now;
+    }
+
+    /**
+     * Take every auction whose deadline has passed out of the expiry queue, soonest first.
+     */
+    public List<AuctionData> pollDueAuctions(long now) {
+        List<AuctionData> due = new ArrayList<>();
+        while (hasDueAuctions(now)) {
+            Deadline deadline = expiryQueue.pollFirst();
+            deadlines.remove(deadline.auctionId());
+            AuctionData auction = auctions.get(deadline.auctionId());
+            if (auction != null && !auction.isEnded()) {
+                due.add(auction);
             }
         }
-        return result;
+        return due;
+    }
+
+    /**
+     * Schedule (or reschedule) settlement of an auction, e.g. to retry after a failed payment.
+     */
+    public void scheduleExpiration(AuctionData auction, long time) {
+        unscheduleExpiration(auction.getId());
+        Deadline deadline = new Deadline(time, auction.getId());
+        expiryQueue.add(deadline);
+        deadlines.put(auction.getId(), deadline);
+    }
+
+    private void unscheduleExpiration(String auctionId) {
+        Deadline deadline = deadlines.remove(auctionId);
+        if (deadline != null) {
+            expiryQueue.remove(deadline);
+        }
+    }
+
+    private record Deadline(long time, String auctionId) {
     }
 
     // ==================== UTILITY ====================
 
-    public boolean hasListingAtClaim(Location claimLocation) {
-        String key = locationKey(claimLocation);
+    /**
+     * Whether a claim has a sale or a running auction.
+     */
+    public boolean hasListingOnClaim(long claimId) {
+        return getSaleByClaim(claimId) != null || getAuctionByClaim(claimId) != null;
+    }
 
-        for (SaleData sale : sales.values()) {
-            if (locationKey(sale.getClaimLocation()).equals(key)) {
-                return true;
-            }
+    public SaleData getSaleByClaim(long claimId) {
+        return claimToSale.get(claimId);
+    }
+
+    /**
+     * The running auction on a claim, or null if there is none.
+     */
+    public AuctionData getAuctionByClaim(long claimId) {
+        AuctionData auction = claimToAuction.get(claimId);
+        return auction != null && !auction.isEnded() ? auction : null;
+    }
+
+    public boolean isListingSign(Location signLocation) {
+        return signToSale.get(signLocation) != null || signToAuction.get(signLocation) != null;
+    }
+
+    /**
+     * Whether a block holds a listing sign. Allocation-free, so it can run for every block event.
+     */
+    public boolean isListingSign(Block block) {
+        return signToSale.contains(block) || signToAuction.contains(block);
+    }
+
+    // ==================== INDEXES ====================
+
+    private void indexSale(SaleData sale) {
+        signToSale.put(sale.getSignLocation(), sale);
+        if (sale.getClaimId() != UNKNOWN_CLAIM_ID) {
+            claimToSale.put(sale.getClaimId(), sale);
         }
+        addToIndex(salesBySeller, sale.getSellerUUID(), sale.getId());
+    }
 
-        for (AuctionData auction : auctions.values()) {
-            if (!auction.isEnded() && locationKey(auction.getClaimLocation()).equals(key)) {
-                return true;
+    private void unindexSale(SaleData sale) {
+        signToSale.remove(sale.getSignLocation());
+        if (claimToSale.get(sale.getClaimId()) == sale) {
+            claimToSale.remove(sale.getClaimId());
+        }
+        removeFromIndex(salesBySeller, sale.getSellerUUID(), sale.getId());
+    }
+
+    private void indexAuction(AuctionData auction) {
+        signToAuction.put(auction.getSignLocation(), auction);
+        if (auction.getClaimId() != UNKNOWN_CLAIM_ID) {
+            // An ended auction awaiting cleanup must not hide a newer one on the same claim
+            AuctionData current = claimToAuction.get(auction.getClaimId());
+            if (current == null || current == auction || current.isEnded() || !auction.isEnded()) {
+                claimToAuction.put(auction.getClaimId(), auction);
             }
         }
+        addToIndex(auctionsBySeller, auction.getSellerUUID(), auction.getId());
+        for (BidData bid : auction.getBids()) {
+            addToIndex(auctionsByBidder, bid.getBidderUUID(), auction.getId());
+        }
+        addToChunkIndex(auction);
+        if (!auction.isEnded() && !deadlines.containsKey(auction.getId())) {
+            scheduleExpiration(auction, auction.getExpires());
+        }
+    }
+
+    private void unindexAuction(AuctionData auction) {
+        signToAuction.remove(auction.getSignLocation());
+        if (claimToAuction.get(auction.getClaimId()) == auction) {
+            claimToAuction.remove(auction.getClaimId());
+        }
+        removeFromIndex(auctionsBySeller, auction.getSellerUUID(), auction.getId());
+        for (BidData bid : auction.getBids()) {
+            removeFromIndex(auctionsByBidder, bid.getBidderUUID(), auction.getId());
+        }
+        removeFromChunkIndex(auction);
+        unscheduleExpiration(auction.getId());
+    }
 
-        return false;
+    private static void addToIndex(Map<UUID, Set<String>> index, UUID player, String id) {
+        index.computeIfAbsent(player, k -> new LinkedHashSet<>()).add(id);
     }
 
-    public boolean isListingSign(Location signLocation) {
-        String key = locationKey(signLocation);
-        return signToSaleId.containsKey(key) || signToAuctionId.containsKey(key);
+    private static void removeFromIndex(Map<UUID, Set<String>> index, UUID player, String id) {
+        Set<String> ids = index.get(player);
+        if (ids != null && ids.remove(id) && ids.isEmpty()) {
+            index.remove(player);
+        }
+    }
+
+    private void addToChunkIndex(AuctionData auction) {
+        Location sign = auction.getSignLocation();
+        LongObjectMap<Set<String>> chunks = auctionsByChunk.computeIfAbsent(sign.getWorld().getUID(), k -> new LongObjectMap<>());
+        long key = Chunk.getChunkKey(sign.getBlockX() >> 4, sign.getBlockZ() >> 4);
+        Set<String> ids = chunks.get(key);
+        if (ids == null) {
+            ids = new HashSet<>();
+            chunks.put(key, ids);
+        }
+        ids.add(auction.getId());
+    }
+
+    private void removeFromChunkIndex(AuctionData auction) {
+        Location sign = auction.getSignLocation();
+        LongObjectMap<Set<String>> chunks = auctionsByChunk.get(sign.getWorld().getUID());
+        if (chunks == null) {
+            return;
+        }
+        long key = Chunk.getChunkKey(sign.getBlockX() >> 4, sign.getBlockZ() >> 4);
+        Set<String> ids = chunks.get(key);
+        if (ids != null && ids.remove(auction.getId()) && ids.isEmpty()) {
+            chunks.remove(key);
+            if (chunks.isEmpty()) {
+                auctionsByChunk.remove(sign.getWorld().getUID());
+            }
+        }
     }
 
-    private String locationKey(Location location) {
-        return location.getWorld().getName() + ":" +
-                location.getBlockX() + ":" +
-                location.getBlockY() + ":" +
-                location.getBlockZ();
+    private static <T> List<T> lookup(Map<UUID, Set<String>> index, UUID player, Map<String, T> listings) {
+        Set<String> ids = index.get(player);
+        if (ids == null) {
+            return new ArrayList<>();
+        }
+        List<T> result = new ArrayList<>(ids.size());
+        for (String id : ids) {
+            result.add(listings.get(id));
+        }
+        return result;
     }
 }
@@ -0,0 +1,193 @@
+package com.haksnbot.ffclaims.market.data;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of market mutations.
+ * Each record is framed as [length][payload][crc32] so a torn tail left by a crash
+ * is detected on replay and everything before it is still applied.
+ * Records are encoded on the main thread and written by the persistence writer thread.
+ */
+public class MarketJournal {
+
+    public static final byte SALE_REMOVE = 2;
+    public static final byte AUCTION_REMOVE = 4;
+    public static final byte BID_ADD = 5;
+    public static final byte SALE_PUT = 6;
+    public static final byte AUCTION_PUT = 7;
+
+    // Put records written before listings carried a claim ID; still replayed
+    public static final byte LEGACY_SALE_PUT = 1;
+    public static final byte LEGACY_AUCTION_PUT = 3;
+
+    private static final int MAX_RECORD_SIZE = 1 << 20;
+
+    private final File file;
+    private final Logger logger;
+    private FileChannel channel;
+    // Whether records dropped while the journal is not open have been reported yet
+    private boolean dropReported;
+
+    public MarketJournal(File dataFolder, Logger logger) {
+        this.file = new File(dataFolder, "market.journal");
+        this.logger = logger;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Open the journal for appending.
+     */
+    public void open() throws IOException {
+        close();
+        file.getParentFile().mkdirs();
+        channel = FileChannel.open(file.toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        dropReported = false;
+    }
+
+    public void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.force(false);
+            channel.close();
+        } catch (IOException e) {
+            logger.warning("Failed to close market journal: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    /**
+     * Encode one framed record. Call this on the thread that owns the data being written.
+     */
+    public static byte[] encode(byte type, RecordWriter writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(type);
+        writer.write(out);
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 8);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        frame.putInt((int) crc.getValue());
+        return frame.array();
+    }
+
+    /**
+     * Append an encoded record. The bytes are handed to the OS immediately.
+     * If the journal could not be opened the record is dropped; the first one is reported,
+     * and the next snapshot still covers it since the listings stay in memory.
+     */
+    public void append(byte[] frame) {
+        if (channel == null) {
+            if (!dropReported) {
+                dropReported = true;
+                logger.severe("Market journal is not open; changes are only saved by the next snapshot "
+                        + "(every compaction interval and on shutdown) until it is.");
+            }
+            return;
+        }
+
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(frame);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to append to market journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Whether the journal file holds any bytes, intact or not.
+     */
+    public boolean hasData() {
+        return file.length() > 0;
+    }
+
+    /**
+     * Discard every record. Only valid once a snapshot covers all of them.
+     */
+    public void reset() throws IOException {
+        close();
+        Files.deleteIfExists(file.toPath());
+        open();
+    }
+
+    /**
+     * Replay every intact record in order.
+     * @return number of records applied
+     */
+    public int replay(RecordHandler handler) {
+        if (!file.exists()) {
+            return 0;
+        }
+
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                int length;
+                try {
+                    length = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length <= 0 || length > MAX_RECORD_SIZE) {
+                    logger.warning("Corrupt record in " + file.getName() + " after " + applied + " records; ignoring the rest.");
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                int storedCrc;
+                try {
+                    in.readFully(payload);
+                    storedCrc = in.readInt();
+                } catch (EOFException e) {
+                    logger.warning("Truncated record at the end of " + file.getName() + "; ignoring it.");
+                    break;
+                }
+
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                if ((int) crc.getValue() != storedCrc) {
+                    logger.warning("Checksum mismatch in " + file.getName() + " after " + applied + " records; ignoring the rest.");
+                    break;
+                }
+
+                DataInputStream record = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = record.readByte();
+                handler.handle(type, record);
+                applied++;
+            }
+        } catch (IOException e) {
+            logger.severe("Failed to replay " + file.getName() + ": " + e.getMessage());
+        }
+        return applied;
+    }
+
+    @FunctionalInterface
+    public interface RecordWriter {
+        void write(DataOutput out) throws IOException;
+    }
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void handle(byte type, DataInput in) throws IOException;
+    }
+}
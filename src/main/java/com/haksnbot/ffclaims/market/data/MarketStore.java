@@ -0,0 +1,87 @@
+package com.haksnbot.ffclaims.market.data;
+
+import org.bukkit.World;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Durable storage for market listings and the transaction history.
+ * All methods are called on the main thread; implementations must hand any disk
+ * I/O to the persistence writer thread, except while loading. Loading may run on a
+ * startup thread, so it must not touch Bukkit beyond the world lookup it is given.
+ */
+public interface MarketStore {
+
+    /**
+     * Storage type as written in the config (yaml, sqlite).
+     */
+    String getType();
+
+    /**
+     * Load every stored listing, replacing nothing: the caller clears its own state first.
+     * Listings in worlds that {@code worlds} cannot resolve are skipped.
+     */
+    void loadListings(Function<String, World> worlds, Consumer<SaleData> saleConsumer, Consumer<AuctionData> auctionConsumer);
+
+    void saveSale(SaleData sale);
+
+    void removeSale(String id);
+
+    /**
+     * Store an auction and all of its bids.
+     */
+    void saveAuction(AuctionData auction);
+
+    void removeAuction(String id);
+
+    /**
+     * Record a single new bid. The auction already contains it.
+     */
+    void addBid(AuctionData auction, BidData bid);
+
+    /**
+     * Make the stored state compact and durable. Called periodically and on shutdown
+     * with the live listings.
+     */
+    void checkpoint(Collection<SaleData> sales, Collection<AuctionData> auctions);
+
+    /**
+     * Highest transaction number handed out so far.
+     */
+    int getTransactionCounter();
+
+    void appendTransaction(TransactionRecord record);
+
+    /**
+     * Look up transactions by number, returned in the order given (missing ones are skipped).
+     * The callback runs on the main thread, with null if the records could not be read.
+     */
+    void findTransactions(int[] sequences, Consumer<List<TransactionRecord>> callback);
+
+    /**
+     * Newest transactions numbered below {@code beforeSequence}, newest first.
+     * The callback runs on the main thread, with null if the records could not be read.
+     */
+    void findRecentTransactions(int count, int beforeSequence, Consumer<List<TransactionRecord>> callback);
+
+    /**
+     * The newest {@code count} transactions, newest first. Only called while loading.
+     */
+    List<TransactionRecord> loadRecentTransactions(int count);
+
+    /**
+     * Visit every (player, transaction number) pair, where the player sold or bought in the
+     * transaction, with each player's numbers ascending. Only called while loading.
+     */
+    void loadPlayerTransactions(ObjIntConsumer<UUID> consumer);
+
+    /**
+     * Release files and connections once all queued writes are done.
+     */
+    void close();
+}
@@ -0,0 +1,62 @@
+package com.haksnbot.ffclaims.market.data;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Growable ascending list of transaction numbers, one per player.
+ */
+final class PostingList {
+
+    private int[] values = new int[4];
+    private int size;
+
+    /**
+     * Add the transaction to the lists of its seller and its buyer/winner.
+     */
+    static void index(Map<UUID, PostingList> postings, TransactionRecord record) {
+        int sequence = record.getSequence();
+        add(postings, TransactionRecord.parsePlayer(record.getSellerUUID()), sequence);
+        if (!record.getBuyerUUID().equals(record.getSellerUUID())) {
+            add(postings, TransactionRecord.parsePlayer(record.getBuyerUUID()), sequence);
+        }
+    }
+
+    private static void add(Map<UUID, PostingList> postings, UUID playerUUID, int sequence) {
+        if (playerUUID != null) {
+            postings.computeIfAbsent(playerUUID, uuid -> new PostingList()).add(sequence);
+        }
+    }
+
+    void add(int value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    int get(int i) {
+        return values[i];
+    }
+
+    /**
+     * Up to {@code count} values below {@code beforeSequence}, largest first.
+     */
+    int[] pageBefore(int beforeSequence, int count) {
+        int end = Arrays.binarySearch(values, 0, size, beforeSequence);
+        if (end < 0) {
+            end = -end - 1;
+        }
+        int length = Math.min(count, end);
+        int[] page = new int[length];
+        for (int i = 0; i < length; i++) {
+            page[i] = values[end - 1 - i];
+        }
+        return page;
+    }
+}
@@ -1,11 +1,14 @@
 package com.haksnbot.ffclaims.market.data;
 
-import org.bukkit.Bukkit;
 import org.bukkit.Location;
 import org.bukkit.World;
 import org.bukkit.configuration.ConfigurationSection;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.UUID;
+import java.util.function.Function;
 
 public class SaleData {
 
@@ -15,12 +18,13 @@ public class SaleData {
     private final double price;
     private final Location signLocation;
     private final Location claimLocation;
+    private final long claimId;
     private final long created;
     private final int area;
     private final String dimensions;
 
     public SaleData(String id, UUID sellerUUID, String sellerName, double price,
-                    Location signLocation, Location claimLocation, long created,
+                    Location signLocation, Location claimLocation, long claimId, long created,
                     int area, String dimensions) {
         this.id = id;
         this.sellerUUID = sellerUUID;
@@ -28,6 +32,7 @@ public class SaleData {
         this.price = price;
         this.signLocation = signLocation;
         this.claimLocation = claimLocation;
+        this.claimId = claimId;
         this.created = created;
         this.area = area;
         this.dimensions = dimensions;
@@ -57,6 +62,22 @@ public class SaleData {
         return claimLocation;
     }
 
+    /**
+     * GriefPrevention ID of the listed claim, or {@link MarketDataManager#UNKNOWN_CLAIM_ID}
+     * for listings stored before IDs were recorded.
+     */
+    public long getClaimId() {
+        return claimId;
+    }
+
+    /**
+     * Copy of this sale with its claim ID filled in.
+     */
+    public SaleData withClaimId(long claimId) {
+        return new SaleData(id, sellerUUID, sellerName, price, signLocation, claimLocation,
+                claimId, created, area, dimensions);
+    }
+
     public long getCreated() {
         return created;
     }
@@ -90,9 +111,16 @@ public class SaleData {
         claimSection.set("x", claimLocation.getBlockX());
         claimSection.set("y", claimLocation.getBlockY());
         claimSection.set("z", claimLocation.getBlockZ());
+        if (claimId != MarketDataManager.UNKNOWN_CLAIM_ID) {
+            claimSection.set("id", claimId);
+        }
     }
 
-    public static SaleData load(String id, ConfigurationSection section) {
+    /**
+     * Load a listing saved by {@link #save(ConfigurationSection)}, resolving worlds by name.
+     * Returns null if the section is invalid or one of its worlds is not loaded.
+     */
+    public static SaleData load(String id, ConfigurationSection section, Function<String, World> worlds) {
         if (section == null) {
             return null;
         }
@@ -107,31 +135,94 @@ public class SaleData {
 
             // Sign location
             ConfigurationSection signSection = section.getConfigurationSection("sign");
-            Location signLocation = loadLocation(signSection);
+            Location signLocation = loadLocation(signSection, worlds);
 
             // Claim location
             ConfigurationSection claimSection = section.getConfigurationSection("claim");
-            Location claimLocation = loadLocation(claimSection);
+            Location claimLocation = loadLocation(claimSection, worlds);
 
             if (signLocation == null || claimLocation == null) {
                 return null;
             }
+            long claimId = claimSection.getLong("id", MarketDataManager.UNKNOWN_CLAIM_ID);
 
             return new SaleData(id, sellerUUID, sellerName, price, signLocation,
-                    claimLocation, created, area, dimensions);
+                    claimLocation, claimId, created, area, dimensions);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
-    private static Location loadLocation(ConfigurationSection section) {
+    /**
+     * Write this sale as a compact binary record (used by the market journal).
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(id);
+        out.writeLong(sellerUUID.getMostSignificantBits());
+        out.writeLong(sellerUUID.getLeastSignificantBits());
+        out.writeUTF(sellerName);
+        out.writeDouble(price);
+        out.writeLong(created);
+        out.writeInt(area);
+        out.writeUTF(dimensions);
+        writeLocation(out, signLocation);
+        writeLocation(out, claimLocation);
+        out.writeLong(claimId);
+    }
+
+    /**
+     * Read a sale written by {@link #write(DataOutput)}, or by an older version without the
+     * claim ID if {@code withClaimId} is false.
+     * Returns null if one of its worlds is not loaded.
+     */
+    public static SaleData read(DataInput in, Function<String, World> worlds, boolean withClaimId) throws IOException {
+        String id = in.readUTF();
+        UUID sellerUUID = new UUID(in.readLong(), in.readLong());
+        String sellerName = in.readUTF();
+        double price = in.readDouble();
+        long created = in.readLong();
+        int area = in.readInt();
+        String dimensions = in.readUTF();
+        Location signLocation = readLocation(in, worlds);
+        Location claimLocation = readLocation(in, worlds);
+        long claimId = withClaimId ? in.readLong() : MarketDataManager.UNKNOWN_CLAIM_ID;
+
+        if (signLocation == null || claimLocation == null) {
+            return null;
+        }
+
+        return new SaleData(id, sellerUUID, sellerName, price, signLocation,
+                claimLocation, claimId, created, area, dimensions);
+    }
+
+    private static void writeLocation(DataOutput out, Location location) throws IOException {
+        out.writeUTF(location.getWorld().getName());
+        out.writeInt(location.getBlockX());
+        out.writeInt(location.getBlockY());
+        out.writeInt(location.getBlockZ());
+    }
+
+    private static Location readLocation(DataInput in, Function<String, World> worlds) throws IOException {
+        String worldName = in.readUTF();
+        int x = in.readInt();
+        int y = in.readInt();
+        int z = in.readInt();
+
+        World world = worldName != null ? worlds.apply(worldName) : null;
+        if (world == null) {
+            return null;
+        }
+        return new Location(world, x, y, z);
+    }
+
+    private static Location loadLocation(ConfigurationSection section, Function<String, World> worlds) {
         if (section == null) {
             return null;
         }
 
         String worldName = section.getString("world");
-        World world = Bukkit.getWorld(worldName);
+        World world = worldName != null ? worlds.apply(worldName) : null;
         if (world == null) {
             return null;
         }
@@ -0,0 +1,650 @@
+package com.haksnbot.ffclaims.market.data;
+
+import com.haksnbot.ffclaims.storage.PersistenceService;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.File;
+import java.sql.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Market storage in a single SQLite database (market.db, WAL mode).
+ * Tables are indexed by seller, bidder, sign position, claim ID and expiry, and
+ * transaction queries run as indexed lookups instead of scanning the whole history.
+ * The connection is only used on the persistence writer thread once loading is done.
+ * Uses the SQLite JDBC driver bundled with the server.
+ */
+public class SqliteMarketStore implements MarketStore {
+
+    private static final int SCHEMA_VERSION = 2;
+
+    private final JavaPlugin plugin;
+    private final PersistenceService persistence;
+    private final File databaseFile;
+    private Connection connection;
+    private int transactionCounter;
+
+    // Prepared once when the database is opened and reused on the connection's thread
+    private PreparedStatement upsertSale;
+    private PreparedStatement deleteSale;
+    private PreparedStatement updateAuction;
+    private PreparedStatement insertAuction;
+    private PreparedStatement deleteAuction;
+    private PreparedStatement deleteBids;
+    private PreparedStatement deleteBidderBid;
+    private PreparedStatement insertBid;
+    private PreparedStatement insertTransaction;
+    private PreparedStatement selectTransaction;
+    private PreparedStatement selectRecentTransactions;
+    private PreparedStatement upsertCounter;
+
+    public SqliteMarketStore(JavaPlugin plugin, PersistenceService persistence) {
+        this.plugin = plugin;
+        this.persistence = persistence;
+        this.databaseFile = new File(plugin.getDataFolder(), "market.db");
+    }
+
+    /**
+     * Whether the SQLite JDBC driver is available on this server.
+     */
+    public static boolean isDriverAvailable() {
+        try {
+            Class.forName("org.sqlite.JDBC");
+            return true;
+        } catch (ClassNotFoundException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public String getType() {
+        return "sqlite";
+    }
+
+    /**
+     * Open the database, create or migrate the schema, and import the YAML files
+     * the first time the database is created.
+     */
+    public void open(Function<String, World> worlds) throws SQLException {
+        databaseFile.getParentFile().mkdirs();
+        connection = DriverManager.getConnection("jdbc:sqlite:" + databaseFile.getAbsolutePath());
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("PRAGMA journal_mode=WAL");
+            statement.execute("PRAGMA synchronous=NORMAL");
+            statement.execute("PRAGMA foreign_keys=ON");
+        }
+
+        int version = getSchemaVersion();
+        if (version > SCHEMA_VERSION) {
+            throw new SQLException("market.db was created by a newer version of FF-Claims (schema " + version + ")");
+        }
+        if (version == 0) {
+            createSchema();
+        } else if (version == 1) {
+            migrateToClaimIds();
+        }
+        prepareStatements();
+
+        if (version == 0) {
+            YamlMarketStore legacy = new YamlMarketStore(plugin, persistence);
+            try {
+                if (legacy.hasData()) {
+                    importFrom(legacy, worlds);
+                }
+            } finally {
+                legacy.close();
+            }
+        }
+
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT value FROM meta WHERE key = 'tx_counter'")) {
+            transactionCounter = rs.next() ? Integer.parseInt(rs.getString(1)) : 0;
+        }
+    }
+
+    private void prepareStatements() throws SQLException {
+        upsertSale = connection.prepareStatement(
+                "INSERT OR REPLACE INTO sales (id, seller_uuid, seller_name, price, " +
+                        "sign_world, sign_x, sign_y, sign_z, claim_world, claim_x, claim_y, claim_z, " +
+                        "claim_id, created, area, dimensions) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        deleteSale = connection.prepareStatement("DELETE FROM sales WHERE id = ?");
+        updateAuction = connection.prepareStatement("UPDATE auctions SET ended = ?, claim_id = ? WHERE id = ?");
+        insertAuction = connection.prepareStatement(
+                "INSERT INTO auctions (id, seller_uuid, seller_name, minimum_bid, buy_now, " +
+                        "sign_world, sign_x, sign_y, sign_z, claim_world, claim_x, claim_y, claim_z, " +
+                        "claim_id, created, expires, area, dimensions, ended) " +
+                        "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        deleteAuction = connection.prepareStatement("DELETE FROM auctions WHERE id = ?");
+        deleteBids = connection.prepareStatement("DELETE FROM bids WHERE auction_id = ?");
+        deleteBidderBid = connection.prepareStatement("DELETE FROM bids WHERE auction_id = ? AND bidder_uuid = ?");
+        insertBid = connection.prepareStatement(
+                "INSERT INTO bids (auction_id, bidder_uuid, bidder_name, amount, timestamp) VALUES (?, ?, ?, ?, ?)");
+        insertTransaction = connection.prepareStatement(INSERT_TRANSACTION);
+        selectTransaction = connection.prepareStatement("SELECT * FROM transactions WHERE seq = ?");
+        selectRecentTransactions = connection.prepareStatement(
+                "SELECT * FROM transactions WHERE seq < ? ORDER BY seq DESC LIMIT ?");
+        upsertCounter = connection.prepareStatement("INSERT OR REPLACE INTO meta (key, value) VALUES ('tx_counter', ?)");
+    }
+
+    private int getSchemaVersion() throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("PRAGMA user_version")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    private void createSchema() throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS meta (" +
+                    "key TEXT PRIMARY KEY, value TEXT NOT NULL)");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS sales (" +
+                    "id TEXT PRIMARY KEY, seller_uuid TEXT NOT NULL, seller_name TEXT NOT NULL, " +
+                    "price REAL NOT NULL, " +
+                    "sign_world TEXT NOT NULL, sign_x INTEGER NOT NULL, sign_y INTEGER NOT NULL, sign_z INTEGER NOT NULL, " +
+                    "claim_world TEXT NOT NULL, claim_x INTEGER NOT NULL, claim_y INTEGER NOT NULL, claim_z INTEGER NOT NULL, " +
+                    "claim_id INTEGER NOT NULL DEFAULT -1, " +
+                    "created INTEGER NOT NULL, area INTEGER NOT NULL, dimensions TEXT NOT NULL)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_sales_seller ON sales (seller_uuid)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_sales_sign ON sales (sign_world, sign_x, sign_y, sign_z)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_sales_claim ON sales (claim_id)");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS auctions (" +
+                    "id TEXT PRIMARY KEY, seller_uuid TEXT NOT NULL, seller_name TEXT NOT NULL, " +
+                    "minimum_bid REAL NOT NULL, buy_now REAL NOT NULL, " +
+                    "sign_world TEXT NOT NULL, sign_x INTEGER NOT NULL, sign_y INTEGER NOT NULL, sign_z INTEGER NOT NULL, " +
+                    "claim_world TEXT NOT NULL, claim_x INTEGER NOT NULL, claim_y INTEGER NOT NULL, claim_z INTEGER NOT NULL, " +
+                    "claim_id INTEGER NOT NULL DEFAULT -1, " +
+                    "created INTEGER NOT NULL, expires INTEGER NOT NULL, area INTEGER NOT NULL, " +
+                    "dimensions TEXT NOT NULL, ended INTEGER NOT NULL DEFAULT 0)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_auctions_seller ON auctions (seller_uuid)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_auctions_sign ON auctions (sign_world, sign_x, sign_y, sign_z)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_auctions_claim ON auctions (claim_id)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_auctions_expiry ON auctions (ended, expires)");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS bids (" +
+                    "auction_id TEXT NOT NULL REFERENCES auctions (id) ON DELETE CASCADE, " +
+                    "bidder_uuid TEXT NOT NULL, bidder_name TEXT NOT NULL, " +
+                    "amount REAL NOT NULL, timestamp INTEGER NOT NULL)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_bids_auction ON bids (auction_id)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_bids_bidder ON bids (bidder_uuid)");
+
+            statement.execute("CREATE TABLE IF NOT EXISTS transactions (" +
+                    "seq INTEGER PRIMARY KEY, tx_id TEXT NOT NULL UNIQUE, type TEXT NOT NULL, " +
+                    "timestamp TEXT NOT NULL, seller_uuid TEXT NOT NULL, seller_name TEXT NOT NULL, " +
+                    "buyer_uuid TEXT NOT NULL, buyer_name TEXT NOT NULL, price REAL NOT NULL, " +
+                    "winning_bid REAL NOT NULL, bid_count INTEGER NOT NULL, claim_area INTEGER NOT NULL, " +
+                    "claim_dimensions TEXT NOT NULL, claim_location TEXT NOT NULL, claim_name TEXT)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_transactions_seller ON transactions (seller_uuid, seq)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_transactions_buyer ON transactions (buyer_uuid, seq)");
+
+            statement.execute("PRAGMA user_version = " + SCHEMA_VERSION);
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+    }
+
+    /**
+     * Schema 1 to 2: listings gain the GriefPrevention claim ID, which replaces the claim
+     * position index. Existing rows keep -1 until the plugin fills the IDs in.
+     */
+    private void migrateToClaimIds() throws SQLException {
+        connection.setAutoCommit(false);
+        try (Statement statement = connection.createStatement()) {
+            for (String table : new String[]{"sales", "auctions"}) {
+                statement.execute("ALTER TABLE " + table + " ADD COLUMN claim_id INTEGER NOT NULL DEFAULT -1");
+                statement.execute("DROP INDEX IF EXISTS idx_" + table + "_claim");
+                statement.execute("CREATE INDEX idx_" + table + "_claim ON " + table + " (claim_id)");
+            }
+            statement.execute("PRAGMA user_version = 2");
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+        plugin.getLogger().info("Upgraded market.db to schema 2 (claim IDs).");
+    }
+
+    /**
+     * One-time import of the YAML data files, in a single database transaction.
+     * The files are renamed to *.imported afterwards so they are not imported twice.
+     */
+    private void importFrom(YamlMarketStore legacy, Function<String, World> worlds) throws SQLException {
+        List<SaleData> sales = new ArrayList<>();
+        List<AuctionData> auctions = new ArrayList<>();
+        legacy.loadListings(worlds, sales::add, auctions::add);
+        persistence.awaitPending(30, TimeUnit.SECONDS);
+
+        int transactionCount;
+        connection.setAutoCommit(false);
+        try {
+            for (SaleData sale : sales) {
+                upsertSale(sale);
+            }
+            for (AuctionData auction : auctions) {
+                upsertAuction(auction);
+            }
+            try {
+                legacy.forEachTransaction(record -> {
+                    try {
+                        bindTransaction(insertTransaction, record);
+                        insertTransaction.addBatch();
+                    } catch (SQLException e) {
+                        throw new IllegalStateException(e);
+                    }
+                });
+                transactionCount = insertTransaction.executeBatch().length;
+            } catch (IllegalStateException e) {
+                throw new SQLException("Failed to read transaction log: " + e.getMessage(), e);
+            }
+            setTransactionCounter(legacy.getTransactionCounter());
+            connection.commit();
+        } catch (SQLException e) {
+            connection.rollback();
+            throw e;
+        } finally {
+            connection.setAutoCommit(true);
+        }
+
+        legacy.markImported();
+        plugin.getLogger().info("Imported " + sales.size() + " sales, " + auctions.size() + " auctions and " +
+                transactionCount + " transactions from YAML into market.db.");
+    }
+
+    // ==================== LISTINGS ====================
+
+    @Override
+    public void loadListings(Function<String, World> worlds, Consumer<SaleData> saleConsumer, Consumer<AuctionData> auctionConsumer) {
+        persistence.awaitPending(10, TimeUnit.SECONDS);
+
+        try (Statement statement = connection.createStatement()) {
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM sales")) {
+                while (rs.next()) {
+                    Location sign = readLocation(rs, "sign", worlds);
+                    Location claim = readLocation(rs, "claim", worlds);
+                    if (sign == null || claim == null) {
+                        continue;
+                    }
+                    saleConsumer.accept(new SaleData(rs.getString("id"),
+                            UUID.fromString(rs.getString("seller_uuid")), rs.getString("seller_name"),
+                            rs.getDouble("price"), sign, claim, rs.getLong("claim_id"), rs.getLong("created"),
+                            rs.getInt("area"), rs.getString("dimensions")));
+                }
+            }
+
+            Map<String, AuctionData> auctions = new LinkedHashMap<>();
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM auctions")) {
+                while (rs.next()) {
+                    Location sign = readLocation(rs, "sign", worlds);
+                    Location claim = readLocation(rs, "claim", worlds);
+                    if (sign == null || claim == null) {
+                        continue;
+                    }
+                    AuctionData auction = new AuctionData(rs.getString("id"),
+                            UUID.fromString(rs.getString("seller_uuid")), rs.getString("seller_name"),
+                            rs.getDouble("minimum_bid"), rs.getDouble("buy_now"), sign, claim,
+                            rs.getLong("claim_id"), rs.getLong("created"), rs.getLong("expires"),
+                            rs.getInt("area"), rs.getString("dimensions"));
+                    auction.setEnded(rs.getBoolean("ended"));
+                    auctions.put(auction.getId(), auction);
+                }
+            }
+
+            try (ResultSet rs = statement.executeQuery("SELECT * FROM bids ORDER BY rowid")) {
+                while (rs.next()) {
+                    AuctionData auction = auctions.get(rs.getString("auction_id"));
+                    if (auction != null) {
+                        auction.addBid(new BidData(UUID.fromString(rs.getString("bidder_uuid")),
+                                rs.getString("bidder_name"), rs.getDouble("amount"), rs.getLong("timestamp")));
+                    }
+                }
+            }
+
+            auctions.values().forEach(auctionConsumer);
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to load market listings from market.db: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public void saveSale(SaleData sale) {
+        persistence.execute(() -> {
+            try {
+                upsertSale(sale);
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to save sale " + sale.getId() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void removeSale(String id) {
+        persistence.execute(() -> {
+            try {
+                deleteSale.setString(1, id);
+                deleteSale.executeUpdate();
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to remove sale " + id + ": " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void saveAuction(AuctionData auction) {
+        AuctionData copy = auction.copy();
+        persistence.execute(() -> {
+            try {
+                connection.setAutoCommit(false);
+                upsertAuction(copy);
+                connection.commit();
+            } catch (SQLException e) {
+                rollback();
+                plugin.getLogger().severe("Failed to save auction " + copy.getId() + ": " + e.getMessage());
+            } finally {
+                restoreAutoCommit();
+            }
+        });
+    }
+
+    @Override
+    public void removeAuction(String id) {
+        persistence.execute(() -> {
+            try {
+                deleteAuction.setString(1, id);
+                deleteAuction.executeUpdate();
+            } catch (SQLException e) {
+                plugin.getLogger().severe("Failed to remove auction " + id + ": " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void addBid(AuctionData auction, BidData bid) {
+        String auctionId = auction.getId();
+        persistence.execute(() -> {
+            try {
+                connection.setAutoCommit(false);
+                // A new bid replaces the bidder's previous one
+                deleteBidderBid.setString(1, auctionId);
+                deleteBidderBid.setString(2, bid.getBidderUUID().toString());
+                deleteBidderBid.executeUpdate();
+                insertBid(auctionId, bid);
+                connection.commit();
+            } catch (SQLException e) {
+                rollback();
+                plugin.getLogger().severe("Failed to save bid on " + auctionId + ": " + e.getMessage());
+            } finally {
+                restoreAutoCommit();
+            }
+        });
+    }
+
+    /**
+     * Every change is already committed; just fold the WAL back into the database file.
+     */
+    @Override
+    public void checkpoint(Collection<SaleData> sales, Collection<AuctionData> auctions) {
+        persistence.execute(() -> {
+            try (Statement statement = connection.createStatement()) {
+                statement.execute("PRAGMA wal_checkpoint(PASSIVE)");
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to checkpoint market.db: " + e.getMessage());
+            }
+        });
+    }
+
+    private void upsertSale(SaleData sale) throws SQLException {
+        upsertSale.setString(1, sale.getId());
+        upsertSale.setString(2, sale.getSellerUUID().toString());
+        upsertSale.setString(3, sale.getSellerName());
+        upsertSale.setDouble(4, sale.getPrice());
+        bindLocation(upsertSale, 5, sale.getSignLocation());
+        bindLocation(upsertSale, 9, sale.getClaimLocation());
+        upsertSale.setLong(13, sale.getClaimId());
+        upsertSale.setLong(14, sale.getCreated());
+        upsertSale.setInt(15, sale.getArea());
+        upsertSale.setString(16, sale.getDimensions());
+        upsertSale.executeUpdate();
+    }
+
+    /**
+     * Replace an auction row and all of its bids. Must run inside a database transaction.
+     */
+    private void upsertAuction(AuctionData auction) throws SQLException {
+        // Plain UPDATE/INSERT rather than INSERT OR REPLACE, which would cascade-delete the bids
+        updateAuction.setBoolean(1, auction.isEnded());
+        updateAuction.setLong(2, auction.getClaimId());
+        updateAuction.setString(3, auction.getId());
+        if (updateAuction.executeUpdate() == 0) {
+            insertAuction.setString(1, auction.getId());
+            insertAuction.setString(2, auction.getSellerUUID().toString());
+            insertAuction.setString(3, auction.getSellerName());
+            insertAuction.setDouble(4, auction.getMinimumBid());
+            insertAuction.setDouble(5, auction.getBuyNowPrice());
+            bindLocation(insertAuction, 6, auction.getSignLocation());
+            bindLocation(insertAuction, 10, auction.getClaimLocation());
+            insertAuction.setLong(14, auction.getClaimId());
+            insertAuction.setLong(15, auction.getCreated());
+            insertAuction.setLong(16, auction.getExpires());
+            insertAuction.setInt(17, auction.getArea());
+            insertAuction.setString(18, auction.getDimensions());
+            insertAuction.setBoolean(19, auction.isEnded());
+            insertAuction.executeUpdate();
+        }
+
+        deleteBids.setString(1, auction.getId());
+        deleteBids.executeUpdate();
+        for (BidData bid : auction.getBids()) {
+            insertBid(auction.getId(), bid);
+        }
+    }
+
+    private void insertBid(String auctionId, BidData bid) throws SQLException {
+        insertBid.setString(1, auctionId);
+        insertBid.setString(2, bid.getBidderUUID().toString());
+        insertBid.setString(3, bid.getBidderName());
+        insertBid.setDouble(4, bid.getAmount());
+        insertBid.setLong(5, bid.getTimestamp());
+        insertBid.executeUpdate();
+    }
+
+    // ==================== TRANSACTIONS ====================
+
+    private static final String INSERT_TRANSACTION =
+            "INSERT OR REPLACE INTO transactions (seq, tx_id, type, timestamp, seller_uuid, seller_name, " +
+                    "buyer_uuid, buyer_name, price, winning_bid, bid_count, claim_area, claim_dimensions, " +
+                    "claim_location, claim_name) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    @Override
+    public int getTransactionCounter() {
+        return transactionCounter;
+    }
+
+    @Override
+    public void appendTransaction(TransactionRecord record) {
+        transactionCounter = Math.max(transactionCounter, record.getSequence());
+        int counter = transactionCounter;
+        persistence.execute(() -> {
+            try {
+                connection.setAutoCommit(false);
+                bindTransaction(insertTransaction, record);
+                insertTransaction.executeUpdate();
+                setTransactionCounter(counter);
+                connection.commit();
+            } catch (SQLException e) {
+                rollback();
+                plugin.getLogger().severe("Failed to save transaction " + record.getTxId() + ": " + e.getMessage());
+            } finally {
+                restoreAutoCommit();
+            }
+        });
+    }
+
+    @Override
+    public void findTransactions(int[] sequences, Consumer<List<TransactionRecord>> callback) {
+        persistence.query("look up transactions", () -> {
+            // One primary-key lookup each, on a statement prepared once
+            List<TransactionRecord> results = new ArrayList<>(sequences.length);
+            for (int sequence : sequences) {
+                selectTransaction.setInt(1, sequence);
+                try (ResultSet rs = selectTransaction.executeQuery()) {
+                    if (rs.next()) {
+                        results.add(readTransaction(rs));
+                    }
+                }
+            }
+            return results;
+        }, callback);
+    }
+
+    @Override
+    public void findRecentTransactions(int count, int beforeSequence, Consumer<List<TransactionRecord>> callback) {
+        persistence.query("query transactions", () -> {
+            selectRecentTransactions.setInt(1, beforeSequence);
+            selectRecentTransactions.setInt(2, count);
+            List<TransactionRecord> results = new ArrayList<>();
+            try (ResultSet rs = selectRecentTransactions.executeQuery()) {
+                while (rs.next()) {
+                    results.add(readTransaction(rs));
+                }
+            }
+            return results;
+        }, callback);
+    }
+
+    @Override
+    public List<TransactionRecord> loadRecentTransactions(int count) {
+        List<TransactionRecord> results = new ArrayList<>();
+        try (PreparedStatement query = connection.prepareStatement(
+                "SELECT * FROM transactions ORDER BY seq DESC LIMIT ?")) {
+            query.setInt(1, count);
+            try (ResultSet rs = query.executeQuery()) {
+                while (rs.next()) {
+                    results.add(readTransaction(rs));
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to read transactions from market.db: " + e.getMessage());
+        }
+        return results;
+    }
+
+    @Override
+    public void loadPlayerTransactions(ObjIntConsumer<UUID> consumer) {
+        try (Statement statement = connection.createStatement();
+             ResultSet rs = statement.executeQuery("SELECT seq, seller_uuid, buyer_uuid FROM transactions ORDER BY seq")) {
+            while (rs.next()) {
+                int sequence = rs.getInt(1);
+                String seller = rs.getString(2);
+                String buyer = rs.getString(3);
+                acceptPlayer(consumer, seller, sequence);
+                if (!buyer.equals(seller)) {
+                    acceptPlayer(consumer, buyer, sequence);
+                }
+            }
+        } catch (SQLException e) {
+            plugin.getLogger().severe("Failed to read transactions from market.db: " + e.getMessage());
+        }
+    }
+
+    private static void acceptPlayer(ObjIntConsumer<UUID> consumer, String uuid, int sequence) {
+        UUID playerUUID = TransactionRecord.parsePlayer(uuid);
+        if (playerUUID != null) {
+            consumer.accept(playerUUID, sequence);
+        }
+    }
+
+    private void setTransactionCounter(int counter) throws SQLException {
+        upsertCounter.setString(1, Integer.toString(counter));
+        upsertCounter.executeUpdate();
+    }
+
+    private static void bindTransaction(PreparedStatement statement, TransactionRecord record) throws SQLException {
+        statement.setInt(1, record.getSequence());
+        statement.setString(2, record.getTxId());
+        statement.setString(3, record.getType());
+        statement.setString(4, record.getTimestamp());
+        statement.setString(5, record.getSellerUUID());
+        statement.setString(6, record.getSellerName());
+        statement.setString(7, record.getBuyerUUID());
+        statement.setString(8, record.getBuyerName());
+        statement.setDouble(9, record.getPrice());
+        statement.setDouble(10, record.getWinningBid());
+        statement.setInt(11, record.getBidCount());
+        statement.setInt(12, record.getClaimArea());
+        statement.setString(13, record.getClaimDimensions());
+        statement.setString(14, record.getClaimLocation());
+        statement.setString(15, record.getClaimName());
+    }
+
+    private static TransactionRecord readTransaction(ResultSet rs) throws SQLException {
+        return new TransactionRecord(
+                rs.getString("tx_id"), rs.getString("type"), rs.getString("timestamp"),
+                rs.getString("seller_uuid"), rs.getString("seller_name"),
+                rs.getString("buyer_uuid"), rs.getString("buyer_name"),
+                rs.getDouble("price"), rs.getDouble("winning_bid"), rs.getInt("bid_count"),
+                rs.getInt("claim_area"), rs.getString("claim_dimensions"),
+                rs.getString("claim_location"), rs.getString("claim_name"));
+    }
+
+    // ==================== UTILITY ====================
+
+    private static void bindLocation(PreparedStatement statement, int index, Location location) throws SQLException {
+        statement.setString(index, location.getWorld().getName());
+        statement.setInt(index + 1, location.getBlockX());
+        statement.setInt(index + 2, location.getBlockY());
+        statement.setInt(index + 3, location.getBlockZ());
+    }
+
+    private static Location readLocation(ResultSet rs, String prefix, Function<String, World> worlds) throws SQLException {
+        World world = worlds.apply(rs.getString(prefix + "_world"));
+        if (world == null) {
+            return null;
+        }
+        return new Location(world, rs.getInt(prefix + "_x"), rs.getInt(prefix + "_y"), rs.getInt(prefix + "_z"));
+    }
+
+    private void rollback() {
+        try {
+            connection.rollback();
+        } catch (SQLException ignored) {
+        }
+    }
+
+    private void restoreAutoCommit() {
+        try {
+            connection.setAutoCommit(true);
+        } catch (SQLException ignored) {
+        }
+    }
+
+    @Override
+    public void close() {
+        persistence.execute(() -> {
+            if (connection == null) {
+                return;
+            }
+            try {
+                // Also closes the prepared statements
+                connection.close();
+            } catch (SQLException e) {
+                plugin.getLogger().warning("Failed to close market.db: " + e.getMessage());
+            }
+            connection = null;
+        });
+    }
+}
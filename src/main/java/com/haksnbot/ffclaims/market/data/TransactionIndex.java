@@ -0,0 +1,140 @@
+package com.haksnbot.ffclaims.market.data;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * In-memory index over the transaction history, maintained on append.
+ * Keeps the latest transactions in a ring buffer, seeded from the newest stored ones, and for
+ * every player the ascending list of transaction numbers they took part in (as seller or
+ * buyer/winner), loaded once at startup. A player's page is found in O(log n + k) without
+ * touching the store.
+ * Main thread only, once loaded.
+ */
+public class TransactionIndex {
+
+    private final TransactionRecord[] ring;
+    private int ringSize;
+    private int ringHead;
+    private boolean evicted;
+
+    private final Map<UUID, PostingList> postings;
+
+    public TransactionIndex(int recentCapacity) {
+        this(recentCapacity, new HashMap<>());
+    }
+
+    private TransactionIndex(int recentCapacity, Map<UUID, PostingList> postings) {
+        this.ring = new TransactionRecord[Math.max(1, recentCapacity)];
+        this.postings = postings;
+    }
+
+    /**
+     * Fill the ring from the newest stored transactions, given newest first.
+     */
+    public void seed(List<TransactionRecord> newestFirst) {
+        for (int i = newestFirst.size() - 1; i >= 0; i--) {
+            addToRing(newestFirst.get(i));
+        }
+        // A full ring may not hold the whole history
+        evicted |= newestFirst.size() >= ring.length;
+    }
+
+    /**
+     * Add a stored transaction to a player's list while loading, in ascending order.
+     */
+    public void seedPosting(UUID playerUUID, int sequence) {
+        postings.computeIfAbsent(playerUUID, uuid -> new PostingList()).add(sequence);
+    }
+
+    /**
+     * Copy of this index with a different ring capacity, keeping the newest cached
+     * transactions and every player list. Used when the configuration is reloaded.
+     */
+    public TransactionIndex resized(int recentCapacity) {
+        TransactionIndex copy = new TransactionIndex(recentCapacity, postings);
+        for (int i = ringSize; i >= 1; i--) {
+            copy.addToRing(ring[Math.floorMod(ringHead - i, ring.length)]);
+        }
+        copy.evicted |= evicted;
+        return copy;
+    }
+
+    /**
+     * Index a transaction. Must be called in ascending transaction order.
+     */
+    public void add(TransactionRecord record) {
+        addToRing(record);
+        PostingList.index(postings, record);
+    }
+
+    private void addToRing(TransactionRecord record) {
+        if (ring[ringHead] != null) {
+            evicted = true;
+        }
+        ring[ringHead] = record;
+        ringHead = (ringHead + 1) % ring.length;
+        ringSize = Math.min(ringSize + 1, ring.length);
+    }
+    /**
+     * Newest cached transactions numbered below {@code beforeSequence}.
+     * Returns fewer than {@code count} once the ring runs out; the caller falls back to the store.
+     */
+    public TransactionRecord[] recent(int count, int beforeSequence) {
+        TransactionRecord[] page = new TransactionRecord[Math.min(count, ringSize)];
+        int found = 0;
+        for (int i = 1; i <= ringSize && found < page.length; i++) {
+            TransactionRecord record = ring[Math.floorMod(ringHead - i, ring.length)];
+            if (record.getSequence() < beforeSequence) {
+                page[found++] = record;
+            }
+        }
+        return found == page.length ? page : Arrays.copyOf(page, found);
+    }
+
+    /**
+     * Whether older transactions have been pushed out of the ring, so a short page from
+     * {@link #recent} does not mean the history has ended.
+     */
+    public boolean hasEvicted() {
+        return evicted;
+    }
+
+    /**
+     * Numbers of the player's newest transactions below {@code beforeSequence}, newest first.
+     */
+    public int[] playerPage(UUID playerUUID, int count, int beforeSequence) {
+        PostingList list = postings.get(playerUUID);
+        if (list == null) {
+            return new int[0];
+        }
+        return list.pageBefore(beforeSequence, count);
+    }
+
+    /**
+     * Cached record for a transaction number, or null if it has left the ring.
+     */
+    public TransactionRecord getCached(int sequence) {
+        if (ringSize == 0) {
+            return null;
+        }
+        int offset = ring[Math.floorMod(ringHead - 1, ring.length)].getSequence() - sequence;
+        // Numbers are usually contiguous, so try the direct slot before scanning
+        if (offset >= 0 && offset < ringSize) {
+            TransactionRecord record = ring[Math.floorMod(ringHead - 1 - offset, ring.length)];
+            if (record.getSequence() == sequence) {
+                return record;
+            }
+        }
+        for (int i = 1; i <= ringSize; i++) {
+            TransactionRecord record = ring[Math.floorMod(ringHead - i, ring.length)];
+            if (record.getSequence() == sequence) {
+                return record;
+            }
+        }
+        return null;
+    }
+}
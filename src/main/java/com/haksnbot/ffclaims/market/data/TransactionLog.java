@@ -0,0 +1,602 @@
+package com.haksnbot.ffclaims.market.data;
+
+import com.haksnbot.ffclaims.storage.AtomicFiles;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only transaction history, split into segment files of {@link #RECORDS_PER_SEGMENT} records.
+ * Each segment starts with a small header (magic, version, first transaction number) followed by
+ * [length][payload][crc32] records. Only the active segment is kept open. Every segment has a
+ * sparse offset index (the position of every {@link #INDEX_INTERVAL}th record) and the numbers of
+ * the transactions each player took part in, written next to it as segment-NNNNNN.idx when it is
+ * sealed, so startup only scans the active segment and a lookup by number reads one short run of
+ * records. A checkpoint file remembers the counter.
+ * Not thread-safe: after {@link #open()} it is only used on the persistence writer thread.
+ */
+public class TransactionLog {
+
+    public static final int RECORDS_PER_SEGMENT = 10_000;
+    private static final int INDEX_INTERVAL = 32;
+
+    private static final int MAGIC = 0x46465458; // "FFTX"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 10;
+    private static final int MAX_RECORD_SIZE = 1 << 16;
+
+    private static final int INDEX_MAGIC = 0x46465849; // "FFXI"
+    private static final short INDEX_VERSION = 2;
+
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    private final File directory;
+    private final File checkpointFile;
+    private final Logger logger;
+
+    // Readable segments by ascending number; the last one is active
+    private final List<Segment> segments = new ArrayList<>();
+    private int nextNumber = 1;
+    private FileChannel active;
+    private int counter;
+
+    public TransactionLog(File dataFolder, Logger logger) {
+        this.directory = new File(dataFolder, "transactions");
+        this.checkpointFile = new File(directory, "checkpoint.dat");
+        this.logger = logger;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public boolean isEmpty() {
+        return segments.isEmpty();
+    }
+
+    /**
+     * Highest transaction number ever written.
+     */
+    public int getCounter() {
+        return counter;
+    }
+
+    /**
+     * Make sure the counter is at least the given value, e.g. when importing older data
+     * whose counter ran ahead of its records.
+     */
+    public void raiseCounter(int value) {
+        counter = Math.max(counter, value);
+    }
+
+    /**
+     * Read the checkpoint and the sealed segments' indexes, and recover the active segment.
+     * A segment that cannot be read is renamed to *.corrupt and skipped, so one damaged
+     * file costs its own transactions rather than the whole history.
+     */
+    public void open() throws IOException {
+        close();
+        directory.mkdirs();
+        segments.clear();
+
+        counter = 0;
+        if (checkpointFile.exists()) {
+            try (DataInputStream in = new DataInputStream(new FileInputStream(checkpointFile))) {
+                counter = in.readInt();
+            }
+        }
+
+        int[] numbers = listSegmentNumbers();
+        nextNumber = numbers.length > 0 ? numbers[numbers.length - 1] + 1 : 1;
+        boolean tailSkipped = false;
+        for (int i = 0; i < numbers.length; i++) {
+            boolean tail = i == numbers.length - 1;
+            try {
+                segments.add(tail ? scanSegment(numbers[i]) : openSealed(numbers[i]));
+            } catch (IOException e) {
+                quarantine(numbers[i], e);
+                tailSkipped = tail;
+            }
+        }
+        for (Segment segment : segments) {
+            counter = Math.max(counter, segment.lastSequence);
+        }
+
+        if (tailSkipped) {
+            // The previous segment is already sealed; never append to it again
+            startSegment(counter + 1);
+        } else if (!segments.isEmpty()) {
+            openActive();
+        }
+    }
+
+    /**
+     * Open a sealed segment from its index, rebuilding the index from the records if it is
+     * missing or does not fit the segment (e.g. a log written before indexes existed).
+     */
+    private Segment openSealed(int number) throws IOException {
+        Segment segment = readIndex(number, false);
+        if (segment == null) {
+            segment = scanSegment(number);
+            writeIndex(segment);
+            segment.postings = null;
+        }
+        return segment;
+    }
+
+    /**
+     * Drop any torn tail of the last segment and open it for appending.
+     */
+    private void openActive() throws IOException {
+        Segment tail = tail();
+        File file = segmentFile(tail.number);
+        active = FileChannel.open(file.toPath(), StandardOpenOption.WRITE);
+        if (active.size() > tail.end) {
+            logger.warning("Dropping " + (active.size() - tail.end) + " unreadable bytes at the end of " + file.getName());
+            active.truncate(tail.end);
+        }
+        active.position(tail.end);
+    }
+
+    private void quarantine(int number, IOException cause) {
+        File file = segmentFile(number);
+        String reason = file.length() < HEADER_SIZE ? "incomplete header" : cause.getMessage();
+        logger.severe("Skipping unreadable transaction log segment " + file.getName() + " (" + reason + ").");
+        if (!file.renameTo(new File(directory, file.getName() + ".corrupt"))) {
+            logger.warning("Could not rename " + file.getName() + " out of the way.");
+        }
+        indexFile(number).delete();
+    }
+
+    /**
+     * Append one transaction, starting a new segment when the active one is full.
+     */
+    public void append(TransactionRecord record) throws IOException {
+        if (active == null || tail().records >= RECORDS_PER_SEGMENT) {
+            startSegment(record.getSequence());
+        }
+
+        byte[] frame = encode(record);
+        long offset = active.position();
+        ByteBuffer buffer = ByteBuffer.wrap(frame);
+        while (buffer.hasRemaining()) {
+            active.write(buffer);
+        }
+        tail().add(record, offset, offset + frame.length);
+        counter = Math.max(counter, record.getSequence());
+    }
+
+    private void startSegment(int firstSequence) throws IOException {
+        if (active != null) {
+            active.force(false);
+            active.close();
+            active = null;
+            try {
+                writeIndex(tail());
+            } catch (IOException e) {
+                logger.warning("Failed to write the index of " + segmentFile(tail().number).getName() +
+                        "; it will be rebuilt on the next start: " + e.getMessage());
+            }
+            // Sealed segments keep their player lists on disk only
+            tail().postings = null;
+            writeCheckpoint();
+        }
+
+        int number = nextNumber++;
+        active = FileChannel.open(segmentFile(number).toPath(),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.putInt(firstSequence);
+        header.flip();
+        while (header.hasRemaining()) {
+            active.write(header);
+        }
+        segments.add(new Segment(number, firstSequence, HEADER_SIZE));
+    }
+
+    /**
+     * Find transactions by number, in the order given. Each one costs a seek and the
+     * decoding of at most {@link #INDEX_INTERVAL} records.
+     */
+    public List<TransactionRecord> find(int[] sequences) throws IOException {
+        List<TransactionRecord> results = new ArrayList<>(sequences.length);
+        Segment runSegment = null;
+        int runMark = -1;
+        List<TransactionRecord> run = List.of();
+        for (int sequence : sequences) {
+            int index = segmentIndexOf(sequence);
+            if (index < 0) {
+                continue;
+            }
+            Segment segment = segments.get(index);
+            int mark = segment.markAtOrBelow(sequence);
+            if (mark < 0) {
+                continue;
+            }
+            // Pages usually ask for neighbouring numbers, so keep the last run around
+            if (segment != runSegment || mark != runMark) {
+                run = readRun(segment, mark);
+                runSegment = segment;
+                runMark = mark;
+            }
+            for (TransactionRecord record : run) {
+                if (record.getSequence() == sequence) {
+                    results.add(record);
+                    break;
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Newest transactions numbered below {@code beforeSequence}, reading runs of records
+     * backwards until enough are found.
+     */
+    public List<TransactionRecord> findRecent(int count, int beforeSequence) throws IOException {
+        List<TransactionRecord> results = new ArrayList<>();
+        for (int index = segmentIndexOf(beforeSequence - 1); index >= 0 && results.size() < count; index--) {
+            Segment segment = segments.get(index);
+            for (int mark = segment.markAtOrBelow(beforeSequence - 1); mark >= 0 && results.size() < count; mark--) {
+                List<TransactionRecord> run = readRun(segment, mark);
+                for (int i = run.size() - 1; i >= 0 && results.size() < count; i--) {
+                    TransactionRecord record = run.get(i);
+                    if (record.getSequence() < beforeSequence) {
+                        results.add(record);
+                    }
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * Visit every (player, transaction number) pair, with each player's numbers ascending.
+     * Sealed segments are read from their index files; only the active one's lists are in memory.
+     */
+    public void forEachPosting(ObjIntConsumer<UUID> consumer) throws IOException {
+        for (Segment segment : segments) {
+            Map<UUID, PostingList> postings = segment.postings;
+            if (postings == null) {
+                Segment indexed = readIndex(segment.number, true);
+                postings = indexed != null ? indexed.postings : scanSegment(segment.number).postings;
+            }
+            postings.forEach((playerUUID, list) -> {
+                for (int i = 0; i < list.size(); i++) {
+                    consumer.accept(playerUUID, list.get(i));
+                }
+            });
+        }
+    }
+
+    /**
+     * Position in {@link #segments} of the segment that would hold a transaction number, or -1 if none.
+     */
+    private int segmentIndexOf(int sequence) {
+        for (int i = segments.size() - 1; i >= 0; i--) {
+            if (segments.get(i).firstSequence <= sequence) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Visit every transaction, oldest first.
+     */
+    public void forEach(Consumer<TransactionRecord> consumer) throws IOException {
+        for (Segment segment : segments) {
+            readSegment(segment).forEach(consumer);
+        }
+    }
+
+    private List<TransactionRecord> readSegment(Segment segment) throws IOException {
+        File file = segmentFile(segment.number);
+        List<TransactionRecord> records = new ArrayList<>(segment.records);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            readHeader(in, file);
+            byte[] payload;
+            while ((payload = readPayload(in, file)) != null) {
+                records.add(decode(payload));
+            }
+        }
+        return records;
+    }
+
+    /**
+     * Read the records from one index mark up to the next, in a single read.
+     */
+    private List<TransactionRecord> readRun(Segment segment, int mark) throws IOException {
+        File file = segmentFile(segment.number);
+        long start = segment.markOffsets[mark];
+        long end = mark + 1 < segment.marks ? segment.markOffsets[mark + 1] : segment.end;
+        ByteBuffer buffer = ByteBuffer.allocate((int) (end - start));
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, start + buffer.position()) < 0) {
+                    throw new EOFException(file.getName() + " is shorter than its index");
+                }
+            }
+        }
+
+        List<TransactionRecord> records = new ArrayList<>(INDEX_INTERVAL);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(buffer.array()));
+        byte[] payload;
+        while ((payload = readPayload(in, file)) != null) {
+            records.add(decode(payload));
+        }
+        return records;
+    }
+
+    /**
+     * Read every record of a segment to build its index.
+     */
+    private Segment scanSegment(int number) throws IOException {
+        File file = segmentFile(number);
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            Segment segment = new Segment(number, readHeader(in, file), HEADER_SIZE);
+            byte[] payload;
+            while ((payload = readPayload(in, file)) != null) {
+                segment.add(decode(payload), segment.end, segment.end + 8 + payload.length);
+            }
+            return segment;
+        }
+    }
+
+    private void writeIndex(Segment segment) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + segment.marks * 12 + segment.records * 8);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(INDEX_MAGIC);
+        out.writeShort(INDEX_VERSION);
+        out.writeInt(segment.firstSequence);
+        out.writeInt(segment.lastSequence);
+        out.writeInt(segment.records);
+        out.writeLong(segment.end);
+        out.writeInt(segment.marks);
+        for (int i = 0; i < segment.marks; i++) {
+            out.writeInt(segment.markSequences[i]);
+            out.writeLong(segment.markOffsets[i]);
+        }
+        out.writeInt(segment.postings.size());
+        for (Map.Entry<UUID, PostingList> entry : segment.postings.entrySet()) {
+            out.writeLong(entry.getKey().getMostSignificantBits());
+            out.writeLong(entry.getKey().getLeastSignificantBits());
+            PostingList list = entry.getValue();
+            out.writeInt(list.size());
+            for (int i = 0; i < list.size(); i++) {
+                out.writeInt(list.get(i));
+            }
+        }
+        AtomicFiles.write(indexFile(segment.number), bytes.toByteArray());
+    }
+
+    /**
+     * Read a sealed segment's index, with its player lists if asked for, or null if it is
+     * missing, unreadable or longer than the segment.
+     */
+    private Segment readIndex(int number, boolean withPostings) {
+        File file = indexFile(number);
+        if (!file.exists()) {
+            return null;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != INDEX_MAGIC || in.readShort() != INDEX_VERSION) {
+                return null;
+            }
+            Segment segment = new Segment(number, in.readInt(), 0);
+            segment.lastSequence = in.readInt();
+            segment.records = in.readInt();
+            segment.end = in.readLong();
+            segment.marks = in.readInt();
+            segment.markSequences = new int[segment.marks];
+            segment.markOffsets = new long[segment.marks];
+            for (int i = 0; i < segment.marks; i++) {
+                segment.markSequences[i] = in.readInt();
+                segment.markOffsets[i] = in.readLong();
+            }
+            segment.postings = null;
+            if (withPostings) {
+                segment.postings = new HashMap<>();
+                for (int players = in.readInt(); players > 0; players--) {
+                    PostingList list = new PostingList();
+                    segment.postings.put(new UUID(in.readLong(), in.readLong()), list);
+                    for (int count = in.readInt(); count > 0; count--) {
+                        list.add(in.readInt());
+                    }
+                }
+            }
+            return segment.end <= segmentFile(number).length() ? segment : null;
+        } catch (IOException | RuntimeException e) {
+            logger.warning("Rebuilding unreadable index " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Flush the active segment and write the checkpoint.
+     */
+    public void close() {
+        if (active == null) {
+            return;
+        }
+        try {
+            active.force(false);
+            active.close();
+            writeCheckpoint();
+        } catch (IOException e) {
+            logger.warning("Failed to close transaction log: " + e.getMessage());
+        }
+        active = null;
+    }
+
+    private void writeCheckpoint() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(counter);
+        AtomicFiles.write(checkpointFile, bytes.toByteArray());
+    }
+
+    private Segment tail() {
+        return segments.get(segments.size() - 1);
+    }
+
+    private int[] listSegmentNumbers() {
+        String[] names = directory.list();
+        if (names == null) {
+            return new int[0];
+        }
+        int[] numbers = new int[names.length];
+        int count = 0;
+        for (String name : names) {
+            Matcher matcher = SEGMENT_NAME.matcher(name);
+            if (matcher.matches()) {
+                numbers[count++] = Integer.parseInt(matcher.group(1));
+            }
+        }
+        numbers = Arrays.copyOf(numbers, count);
+        Arrays.sort(numbers);
+        return numbers;
+    }
+
+    private File segmentFile(int number) {
+        return new File(directory, String.format("segment-%06d.log", number));
+    }
+
+    private File indexFile(int number) {
+        return new File(directory, String.format("segment-%06d.idx", number));
+    }
+
+    private static int readHeader(DataInputStream in, File file) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new IOException(file.getName() + " is not a transaction log segment");
+        }
+        short version = in.readShort();
+        if (version != VERSION) {
+            throw new IOException(file.getName() + " has unsupported version " + version);
+        }
+        return in.readInt();
+    }
+
+    /**
+     * Read the payload of the next intact record, or null at the end of the segment
+     * or at a torn/corrupt record.
+     */
+    private byte[] readPayload(DataInputStream in, File file) throws IOException {
+        int length;
+        try {
+            length = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+        if (length <= 0 || length > MAX_RECORD_SIZE) {
+            logger.warning("Corrupt record in " + file.getName() + "; ignoring the rest of the segment.");
+            return null;
+        }
+
+        byte[] payload = new byte[length];
+        int storedCrc;
+        try {
+            in.readFully(payload);
+            storedCrc = in.readInt();
+        } catch (EOFException e) {
+            return null;
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        if ((int) crc.getValue() != storedCrc) {
+            logger.warning("Checksum mismatch in " + file.getName() + "; ignoring the rest of the segment.");
+            return null;
+        }
+        return payload;
+    }
+
+    private static TransactionRecord decode(byte[] payload) throws IOException {
+        return TransactionRecord.read(new DataInputStream(new ByteArrayInputStream(payload)));
+    }
+
+    private static byte[] encode(TransactionRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        record.write(out);
+        out.flush();
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(payload.length + 8);
+        frame.putInt(payload.length);
+        frame.put(payload);
+        frame.putInt((int) crc.getValue());
+        return frame.array();
+    }
+
+    /**
+     * One segment file, its sparse offset index and, while it is active or being indexed, the
+     * transaction numbers of each player in it. Transaction numbers ascend within a segment.
+     */
+    private static final class Segment {
+        final int number;
+        final int firstSequence;
+        int lastSequence;
+        int records;
+        // End of the last intact record
+        long end;
+        // Transaction number and file offset of every INDEX_INTERVAL-th record
+        int[] markSequences = new int[8];
+        long[] markOffsets = new long[8];
+        int marks;
+        // Null for sealed segments, whose lists are only in their index file
+        Map<UUID, PostingList> postings = new HashMap<>();
+
+        Segment(int number, int firstSequence, long end) {
+            this.number = number;
+            this.firstSequence = firstSequence;
+            this.end = end;
+        }
+
+        void add(TransactionRecord record, long offset, long recordEnd) {
+            int sequence = record.getSequence();
+            if (records % INDEX_INTERVAL == 0) {
+                if (marks == markSequences.length) {
+                    markSequences = Arrays.copyOf(markSequences, marks * 2);
+                    markOffsets = Arrays.copyOf(markOffsets, marks * 2);
+                }
+                markSequences[marks] = sequence;
+                markOffsets[marks] = offset;
+                marks++;
+            }
+            records++;
+            lastSequence = sequence;
+            end = recordEnd;
+            if (postings != null) {
+                PostingList.index(postings, record);
+            }
+        }
+
+        /**
+         * Index of the last mark numbered at or below {@code sequence}, or -1 if none.
+         */
+        int markAtOrBelow(int sequence) {
+            int i = Arrays.binarySearch(markSequences, 0, marks, sequence);
+            return i >= 0 ? i : -i - 2;
+        }
+    }
+}
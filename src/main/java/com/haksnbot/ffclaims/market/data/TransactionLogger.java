@@ -1,56 +1,55 @@
 package com.haksnbot.ffclaims.market.data;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
-import org.bukkit.configuration.ConfigurationSection;
-import org.bukkit.configuration.file.YamlConfiguration;
 
-import java.io.File;
-import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Collections;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Logs all completed real estate transactions for record-keeping.
+ * Records are kept by the configured {@link MarketStore}.
  */
 public class TransactionLogger {
 
     private final FFClaimsPlugin plugin;
-    private final File logFile;
-    private YamlConfiguration logConfig;
+    private final MarketStore store;
+    private TransactionIndex index;
     private int transactionCounter;
 
     private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
 
-    public TransactionLogger(FFClaimsPlugin plugin) {
+    public TransactionLogger(FFClaimsPlugin plugin, MarketStore store) {
         this.plugin = plugin;
-        this.logFile = new File(plugin.getDataFolder(), "transactions.yml");
-        load();
+        this.store = store;
+        this.transactionCounter = store.getTransactionCounter();
+        int cached = plugin.getConfigManager().getRecentTransactionCacheSize();
+        this.index = new TransactionIndex(cached);
+        index.seed(store.loadRecentTransactions(cached));
+        store.loadPlayerTransactions(index::seedPosting);
     }
 
-    private void load() {
-        if (!logFile.exists()) {
-            try {
-                logFile.getParentFile().mkdirs();
-                logFile.createNewFile();
-            } catch (IOException e) {
-                plugin.getLogger().severe("Failed to create transactions.yml: " + e.getMessage());
-            }
-        }
-        logConfig = YamlConfiguration.loadConfiguration(logFile);
-        transactionCounter = logConfig.getInt("_counter", 0);
+    /**
+     * Apply a changed cache size after the configuration is reloaded.
+     */
+    public void reload() {
+        index = index.resized(plugin.getConfigManager().getRecentTransactionCacheSize());
     }
 
-    private void save() {
-        try {
-            logConfig.set("_counter", transactionCounter);
-            logConfig.save(logFile);
-        } catch (IOException e) {
-            plugin.getLogger().severe("Failed to save transactions.yml: " + e.getMessage());
-        }
+    private void append(TransactionRecord record) {
+        index.add(record);
+        store.appendTransaction(record);
+    }
+
+    private String nextTransactionId() {
+        transactionCounter++;
+        return "TX" + String.format("%06d", transactionCounter);
     }
 
     /**
@@ -62,25 +61,10 @@ public class TransactionLogger {
             double price, int claimArea, String claimDimensions,
             String claimLocation, String claimName
     ) {
-        transactionCounter++;
-        String txId = "TX" + String.format("%06d", transactionCounter);
-
-        ConfigurationSection tx = logConfig.createSection("transactions." + txId);
-        tx.set("type", "SALE");
-        tx.set("timestamp", DATE_FORMAT.format(new Date()));
-        tx.set("seller.uuid", sellerUUID.toString());
-        tx.set("seller.name", sellerName);
-        tx.set("buyer.uuid", buyerUUID.toString());
-        tx.set("buyer.name", buyerName);
-        tx.set("price", price);
-        tx.set("claim.area", claimArea);
-        tx.set("claim.dimensions", claimDimensions);
-        tx.set("claim.location", claimLocation);
-        if (claimName != null && !claimName.isEmpty()) {
-            tx.set("claim.name", claimName);
-        }
-
-        save();
+        String txId = nextTransactionId();
+        append(new TransactionRecord(txId, "SALE", DATE_FORMAT.format(new Date()),
+                sellerUUID.toString(), sellerName, buyerUUID.toString(), buyerName,
+                price, 0, 0, claimArea, claimDimensions, claimLocation, claimName));
 
         plugin.getLogger().info(String.format("[%s] SALE: %s sold to %s for $%.2f (%d blocks)",
                 txId, sellerName, buyerName, price, claimArea));
@@ -96,27 +80,10 @@ public class TransactionLogger {
             int claimArea, String claimDimensions,
             String claimLocation, String claimName
     ) {
-        transactionCounter++;
-        String txId = "TX" + String.format("%06d", transactionCounter);
-
-        ConfigurationSection tx = logConfig.createSection("transactions." + txId);
-        tx.set("type", "AUCTION");
-        tx.set("timestamp", DATE_FORMAT.format(new Date()));
-        tx.set("seller.uuid", sellerUUID.toString());
-        tx.set("seller.name", sellerName);
-        tx.set("winner.uuid", winnerUUID.toString());
-        tx.set("winner.name", winnerName);
-        tx.set("winning-bid", winningBid);
-        tx.set("paid-price", paidPrice);  // Vickrey: second-highest bid
-        tx.set("bid-count", bidCount);
-        tx.set("claim.area", claimArea);
-        tx.set("claim.dimensions", claimDimensions);
-        tx.set("claim.location", claimLocation);
-        if (claimName != null && !claimName.isEmpty()) {
-            tx.set("claim.name", claimName);
-        }
-
-        save();
+        String txId = nextTransactionId();
+        append(new TransactionRecord(txId, "AUCTION", DATE_FORMAT.format(new Date()),
+                sellerUUID.toString(), sellerName, winnerUUID.toString(), winnerName,
+                paidPrice, winningBid, bidCount, claimArea, claimDimensions, claimLocation, claimName));
 
         plugin.getLogger().info(String.format("[%s] AUCTION: %s won from %s for $%.2f (bid: $%.2f, %d blocks)",
                 txId, winnerName, sellerName, paidPrice, winningBid, claimArea));
@@ -131,25 +98,10 @@ public class TransactionLogger {
             double price, int claimArea, String claimDimensions,
             String claimLocation, String claimName
     ) {
-        transactionCounter++;
-        String txId = "TX" + String.format("%06d", transactionCounter);
-
-        ConfigurationSection tx = logConfig.createSection("transactions." + txId);
-        tx.set("type", "BUY_NOW");
-        tx.set("timestamp", DATE_FORMAT.format(new Date()));
-        tx.set("seller.uuid", sellerUUID.toString());
-        tx.set("seller.name", sellerName);
-        tx.set("buyer.uuid", buyerUUID.toString());
-        tx.set("buyer.name", buyerName);
-        tx.set("price", price);
-        tx.set("claim.area", claimArea);
-        tx.set("claim.dimensions", claimDimensions);
-        tx.set("claim.location", claimLocation);
-        if (claimName != null && !claimName.isEmpty()) {
-            tx.set("claim.name", claimName);
-        }
-
-        save();
+        String txId = nextTransactionId();
+        append(new TransactionRecord(txId, "BUY_NOW", DATE_FORMAT.format(new Date()),
+                sellerUUID.toString(), sellerName, buyerUUID.toString(), buyerName,
+                price, 0, 0, claimArea, claimDimensions, claimLocation, claimName));
 
         plugin.getLogger().info(String.format("[%s] BUY_NOW: %s bought from %s for $%.2f (%d blocks)",
                 txId, buyerName, sellerName, price, claimArea));
@@ -163,103 +115,122 @@ public class TransactionLogger {
     }
 
     /**
-     * Get recent transactions formatted for display.
+     * Get a page of recent transactions, newest first.
+     * Served from the in-memory index where possible; only records that have left the
+     * ring are read from the store.
      * @param count Number of transactions to retrieve
      * @param playerFilter Optional UUID to filter by (as buyer or seller). Null for all.
-     * @return List of formatted transaction strings
+     * @param beforeSequence Only transactions numbered below this (paging cursor); Integer.MAX_VALUE for the newest
+     * @param callback Receives the transactions on the main thread
+     * @param onFailure Runs on the main thread instead if the store could not be read
      */
-    public List<String> getRecentTransactions(int count, UUID playerFilter) {
-        List<String> results = new ArrayList<>();
-        ConfigurationSection transactions = logConfig.getConfigurationSection("transactions");
-        if (transactions == null) {
-            return results;
+    public void getRecentTransactions(int count, UUID playerFilter, int beforeSequence,
+                                      Consumer<List<TransactionRecord>> callback, Runnable onFailure) {
+        if (playerFilter != null) {
+            resolve(index.playerPage(playerFilter, count, beforeSequence), callback, onFailure);
+            return;
         }
 
-        // Get all transaction IDs and sort in reverse order (newest first)
-        List<String> txIds = new ArrayList<>(transactions.getKeys(false));
-        Collections.sort(txIds, Collections.reverseOrder());
+        TransactionRecord[] cached = index.recent(count, beforeSequence);
+        if (cached.length == count || !index.hasEvicted()) {
+            callback.accept(List.of(cached));
+        } else {
+            store.findRecentTransactions(count, beforeSequence, orFail(callback, onFailure));
+        }
+    }
 
-        for (String txId : txIds) {
-            if (results.size() >= count) {
-                break;
+    /**
+     * Turn transaction numbers into records, reading only those not in the ring from the store.
+     */
+    private void resolve(int[] sequences, Consumer<List<TransactionRecord>> callback, Runnable onFailure) {
+        TransactionRecord[] records = new TransactionRecord[sequences.length];
+        int[] missing = new int[sequences.length];
+        int missingCount = 0;
+        for (int i = 0; i < sequences.length; i++) {
+            records[i] = index.getCached(sequences[i]);
+            if (records[i] == null) {
+                missing[missingCount++] = sequences[i];
             }
+        }
+        if (missingCount == 0) {
+            callback.accept(List.of(records));
+            return;
+        }
 
-            ConfigurationSection tx = transactions.getConfigurationSection(txId);
-            if (tx == null) {
-                continue;
+        store.findTransactions(Arrays.copyOf(missing, missingCount), orFail(found -> {
+            Map<Integer, TransactionRecord> bySequence = new HashMap<>();
+            for (TransactionRecord record : found) {
+                bySequence.put(record.getSequence(), record);
             }
-
-            // Apply player filter if provided
-            if (playerFilter != null) {
-                String sellerUUID = tx.getString("seller.uuid", "");
-                String buyerUUID = tx.getString("buyer.uuid", tx.getString("winner.uuid", ""));
-                if (!sellerUUID.equals(playerFilter.toString()) &&
-                        !buyerUUID.equals(playerFilter.toString())) {
-                    continue;
+            List<TransactionRecord> page = new ArrayList<>(records.length);
+            for (int i = 0; i < records.length; i++) {
+                TransactionRecord record = records[i] != null ? records[i] : bySequence.get(sequences[i]);
+                if (record != null) {
+                    page.add(record);
                 }
             }
+            callback.accept(page);
+        }, onFailure));
+    }
 
-            results.add(formatTransaction(txId, tx));
-        }
-
-        return results;
+    /**
+     * Store results arrive as null when the read failed; route those to {@code onFailure}.
+     */
+    private static <T> Consumer<T> orFail(Consumer<T> callback, Runnable onFailure) {
+        return result -> {
+            if (result != null) {
+                callback.accept(result);
+            } else {
+                onFailure.run();
+            }
+        };
     }
 
     /**
-     * Get a specific transaction by ID.
+     * Get a specific transaction by ID, formatted for display (null if not found).
+     * {@code onFailure} runs instead if the store could not be read.
      */
-    public String getTransaction(String txId) {
-        ConfigurationSection tx = logConfig.getConfigurationSection("transactions." + txId);
-        if (tx == null) {
-            return null;
+    public void getTransaction(String txId, Consumer<String> callback, Runnable onFailure) {
+        int sequence = TransactionRecord.parseSequence(txId);
+        TransactionRecord cached = index.getCached(sequence);
+        if (cached != null && cached.getTxId().equals(txId)) {
+            callback.accept(formatTransactionDetail(cached));
+            return;
         }
-        return formatTransactionDetail(txId, tx);
+        store.findTransactions(new int[]{sequence}, orFail(records -> callback.accept(
+                records.isEmpty() || !records.get(0).getTxId().equals(txId)
+                        ? null
+                        : formatTransactionDetail(records.get(0))), onFailure));
     }
 
-    private String formatTransaction(String txId, ConfigurationSection tx) {
-        String type = tx.getString("type", "UNKNOWN");
-        String timestamp = tx.getString("timestamp", "?");
-        String seller = tx.getString("seller.name", "?");
-        String buyer = tx.getString("buyer.name", tx.getString("winner.name", "?"));
-        double price = tx.getDouble("price", tx.getDouble("paid-price", 0));
-        int area = tx.getInt("claim.area", 0);
-        String claimName = tx.getString("claim.name");
-
-        String claimDesc = claimName != null ? claimName : (area + " blocks");
+    /**
+     * One-line summary of a transaction for chat.
+     */
+    public String formatTransaction(TransactionRecord tx) {
+        String claimDesc = tx.getClaimName() != null ? tx.getClaimName() : (tx.getClaimArea() + " blocks");
 
         return String.format("&7[%s] &e%s &7%s → %s &afor &e$%,.0f &7(%s)",
-                txId, type, seller, buyer, price, claimDesc);
+                tx.getTxId(), tx.getType(), tx.getSellerName(), tx.getBuyerName(), tx.getPrice(), claimDesc);
     }
 
-    private String formatTransactionDetail(String txId, ConfigurationSection tx) {
+    private String formatTransactionDetail(TransactionRecord tx) {
         StringBuilder sb = new StringBuilder();
-        String type = tx.getString("type", "UNKNOWN");
-        String timestamp = tx.getString("timestamp", "?");
-        String seller = tx.getString("seller.name", "?");
-        String buyer = tx.getString("buyer.name", tx.getString("winner.name", "?"));
-        double price = tx.getDouble("price", tx.getDouble("paid-price", 0));
-        int area = tx.getInt("claim.area", 0);
-        String dimensions = tx.getString("claim.dimensions", "?");
-        String location = tx.getString("claim.location", "?");
-        String claimName = tx.getString("claim.name");
 
-        sb.append("&6--- Transaction ").append(txId).append(" ---\n");
-        sb.append("&7Type: &f").append(type).append("\n");
-        sb.append("&7Date: &f").append(timestamp).append("\n");
-        sb.append("&7Seller: &f").append(seller).append("\n");
-        sb.append("&7Buyer: &f").append(buyer).append("\n");
-        sb.append("&7Price: &a$").append(String.format("%,.2f", price)).append("\n");
-        if (claimName != null) {
-            sb.append("&7Claim: &f").append(claimName).append("\n");
+        sb.append("&6--- Transaction ").append(tx.getTxId()).append(" ---\n");
+        sb.append("&7Type: &f").append(tx.getType()).append("\n");
+        sb.append("&7Date: &f").append(tx.getTimestamp()).append("\n");
+        sb.append("&7Seller: &f").append(tx.getSellerName()).append("\n");
+        sb.append("&7Buyer: &f").append(tx.getBuyerName()).append("\n");
+        sb.append("&7Price: &a$").append(String.format("%,.2f", tx.getPrice())).append("\n");
+        if (tx.getClaimName() != null) {
+            sb.append("&7Claim: &f").append(tx.getClaimName()).append("\n");
         }
-        sb.append("&7Size: &f").append(dimensions).append(" (").append(area).append(" blocks)\n");
-        sb.append("&7Location: &f").append(location);
+        sb.append("&7Size: &f").append(tx.getClaimDimensions()).append(" (").append(tx.getClaimArea()).append(" blocks)\n");
+        sb.append("&7Location: &f").append(tx.getClaimLocation());
 
-        if (type.equals("AUCTION")) {
-            double winningBid = tx.getDouble("winning-bid", 0);
-            int bidCount = tx.getInt("bid-count", 0);
-            sb.append("\n&7Winning Bid: &e$").append(String.format("%,.2f", winningBid));
-            sb.append("\n&7Total Bids: &f").append(bidCount);
+        if (tx.isAuction()) {
+            sb.append("\n&7Winning Bid: &e$").append(String.format("%,.2f", tx.getWinningBid()));
+            sb.append("\n&7Total Bids: &f").append(tx.getBidCount());
         }
 
         return sb.toString();
@@ -0,0 +1,236 @@
+package com.haksnbot.ffclaims.market.data;
+
+import org.bukkit.configuration.ConfigurationSection;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * One completed transaction. Immutable, so records can be handed to the writer thread as-is.
+ */
+public class TransactionRecord {
+
+    private final String txId;
+    private final String type;
+    private final String timestamp;
+    private final String sellerUUID;
+    private final String sellerName;
+    private final String buyerUUID;
+    private final String buyerName;
+    private final double price;
+    private final double winningBid;
+    private final int bidCount;
+    private final int claimArea;
+    private final String claimDimensions;
+    private final String claimLocation;
+    private final String claimName;
+
+    public TransactionRecord(String txId, String type, String timestamp,
+                             String sellerUUID, String sellerName,
+                             String buyerUUID, String buyerName,
+                             double price, double winningBid, int bidCount,
+                             int claimArea, String claimDimensions,
+                             String claimLocation, String claimName) {
+        this.txId = txId;
+        this.type = type;
+        this.timestamp = timestamp;
+        this.sellerUUID = sellerUUID;
+        this.sellerName = sellerName;
+        this.buyerUUID = buyerUUID;
+        this.buyerName = buyerName;
+        this.price = price;
+        this.winningBid = winningBid;
+        this.bidCount = bidCount;
+        this.claimArea = claimArea;
+        this.claimDimensions = claimDimensions;
+        this.claimLocation = claimLocation;
+        this.claimName = claimName != null && !claimName.isEmpty() ? claimName : null;
+    }
+
+    public void save(ConfigurationSection section) {
+        section.set("type", type);
+        section.set("timestamp", timestamp);
+        section.set("seller.uuid", sellerUUID);
+        section.set("seller.name", sellerName);
+        if (isAuction()) {
+            section.set("winner.uuid", buyerUUID);
+            section.set("winner.name", buyerName);
+            section.set("winning-bid", winningBid);
+            section.set("paid-price", price);  // Vickrey: second-highest bid
+            section.set("bid-count", bidCount);
+        } else {
+            section.set("buyer.uuid", buyerUUID);
+            section.set("buyer.name", buyerName);
+            section.set("price", price);
+        }
+        section.set("claim.area", claimArea);
+        section.set("claim.dimensions", claimDimensions);
+        section.set("claim.location", claimLocation);
+        if (claimName != null) {
+            section.set("claim.name", claimName);
+        }
+    }
+
+    public static TransactionRecord load(String txId, ConfigurationSection section) {
+        if (section == null) {
+            return null;
+        }
+        return new TransactionRecord(
+                txId,
+                section.getString("type", "UNKNOWN"),
+                section.getString("timestamp", "?"),
+                section.getString("seller.uuid", ""),
+                section.getString("seller.name", "?"),
+                section.getString("buyer.uuid", section.getString("winner.uuid", "")),
+                section.getString("buyer.name", section.getString("winner.name", "?")),
+                section.getDouble("price", section.getDouble("paid-price", 0)),
+                section.getDouble("winning-bid", 0),
+                section.getInt("bid-count", 0),
+                section.getInt("claim.area", 0),
+                section.getString("claim.dimensions", "?"),
+                section.getString("claim.location", "?"),
+                section.getString("claim.name")
+        );
+    }
+
+    /**
+     * Write this transaction as a compact binary record (used by the transaction log).
+     */
+    public void write(DataOutput out) throws IOException {
+        out.writeUTF(txId);
+        out.writeUTF(type);
+        out.writeUTF(timestamp);
+        out.writeUTF(sellerUUID);
+        out.writeUTF(sellerName);
+        out.writeUTF(buyerUUID);
+        out.writeUTF(buyerName);
+        out.writeDouble(price);
+        out.writeDouble(winningBid);
+        out.writeInt(bidCount);
+        out.writeInt(claimArea);
+        out.writeUTF(claimDimensions);
+        out.writeUTF(claimLocation);
+        out.writeBoolean(claimName != null);
+        if (claimName != null) {
+            out.writeUTF(claimName);
+        }
+    }
+
+    public static TransactionRecord read(DataInput in) throws IOException {
+        String txId = in.readUTF();
+        String type = in.readUTF();
+        String timestamp = in.readUTF();
+        String sellerUUID = in.readUTF();
+        String sellerName = in.readUTF();
+        String buyerUUID = in.readUTF();
+        String buyerName = in.readUTF();
+        double price = in.readDouble();
+        double winningBid = in.readDouble();
+        int bidCount = in.readInt();
+        int claimArea = in.readInt();
+        String claimDimensions = in.readUTF();
+        String claimLocation = in.readUTF();
+        String claimName = in.readBoolean() ? in.readUTF() : null;
+        return new TransactionRecord(txId, type, timestamp, sellerUUID, sellerName, buyerUUID, buyerName,
+                price, winningBid, bidCount, claimArea, claimDimensions, claimLocation, claimName);
+    }
+
+    /**
+     * Whether the given player was the seller or the buyer/winner.
+     */
+    public boolean involves(UUID playerUUID) {
+        String id = playerUUID.toString();
+        return sellerUUID.equals(id) || buyerUUID.equals(id);
+    }
+
+    /**
+     * Numeric part of the transaction ID (TX000042 -> 42), or 0 if it has none.
+     */
+    public int getSequence() {
+        return parseSequence(txId);
+    }
+
+    /**
+     * Numeric part of a transaction ID (TX000042 -> 42), or 0 if it has none.
+     */
+    public static int parseSequence(String txId) {
+        try {
+            return Integer.parseInt(txId.substring(2));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * A stored player UUID as a UUID, or null for the empty or malformed values older logs may hold.
+     */
+    public static UUID parsePlayer(String uuid) {
+        try {
+            return UUID.fromString(uuid);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public boolean isAuction() {
+        return type.equals("AUCTION");
+    }
+
+    public String getTxId() {
+        return txId;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getTimestamp() {
+        return timestamp;
+    }
+
+    public String getSellerUUID() {
+        return sellerUUID;
+    }
+
+    public String getSellerName() {
+        return sellerName;
+    }
+
+    public String getBuyerUUID() {
+        return buyerUUID;
+    }
+
+    public String getBuyerName() {
+        return buyerName;
+    }
+
+    public double getPrice() {
+        return price;
+    }
+
+    public double getWinningBid() {
+        return winningBid;
+    }
+
+    public int getBidCount() {
+        return bidCount;
+    }
+
+    public int getClaimArea() {
+        return claimArea;
+    }
+
+    public String getClaimDimensions() {
+        return claimDimensions;
+    }
+
+    public String getClaimLocation() {
+        return claimLocation;
+    }
+
+    public String getClaimName() {
+        return claimName;
+    }
+}
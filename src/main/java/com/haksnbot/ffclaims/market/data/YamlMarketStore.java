@@ -0,0 +1,383 @@
+package com.haksnbot.ffclaims.market.data;
+
+import com.haksnbot.ffclaims.storage.AtomicFiles;
+import com.haksnbot.ffclaims.storage.PersistenceService;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.file.YamlConfiguration;
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Market storage in YAML files.
+ * Listings are kept as YAML snapshots plus an append-only journal: every mutation appends
+ * one small record and the snapshots are only rewritten by {@link #checkpoint}.
+ * Transactions are appended to a segmented {@link TransactionLog}.
+ */
+public class YamlMarketStore implements MarketStore {
+
+    private final JavaPlugin plugin;
+    private final PersistenceService persistence;
+    private final File salesFile;
+    private final File auctionsFile;
+    private final File transactionsFile;
+    private final MarketJournal journal;
+    private final TransactionLog transactionLog;
+
+    // Journal records appended since the last snapshot was queued
+    private int pendingRecords = 0;
+
+    private int transactionCounter;
+
+    public YamlMarketStore(JavaPlugin plugin, PersistenceService persistence) {
+        this.plugin = plugin;
+        this.persistence = persistence;
+        this.salesFile = new File(plugin.getDataFolder(), "market-sales.yml");
+        this.auctionsFile = new File(plugin.getDataFolder(), "market-auctions.yml");
+        this.transactionsFile = new File(plugin.getDataFolder(), "transactions.yml");
+        this.journal = new MarketJournal(plugin.getDataFolder(), plugin.getLogger());
+        this.transactionLog = new TransactionLog(plugin.getDataFolder(), plugin.getLogger());
+        openTransactionLog();
+    }
+
+    @Override
+    public String getType() {
+        return "yaml";
+    }
+
+    /**
+     * Whether any of the YAML data files exist (used by the SQLite importer).
+     */
+    public boolean hasData() {
+        return salesFile.exists() || auctionsFile.exists() || journal.hasData() || !transactionLog.isEmpty();
+    }
+
+    /**
+     * Rename the data files out of the way once they have been imported elsewhere.
+     */
+    public void markImported() {
+        journal.close();
+        transactionLog.close();
+        for (File file : new File[]{salesFile, auctionsFile, journal.getFile(), transactionLog.getDirectory()}) {
+            if (file.exists() && !file.renameTo(new File(file.getParentFile(), file.getName() + ".imported"))) {
+                plugin.getLogger().warning("Could not rename " + file.getName() + " after import.");
+            }
+        }
+    }
+
+    // ==================== LISTINGS ====================
+
+    /**
+     * Load the snapshots and replay the journal on top of them.
+     * If the journal contained records they are folded into a fresh snapshot right away.
+     */
+    @Override
+    public void loadListings(Function<String, World> worlds, Consumer<SaleData> saleConsumer, Consumer<AuctionData> auctionConsumer) {
+        persistence.awaitPending(10, TimeUnit.SECONDS);
+        journal.close();
+
+        Map<String, SaleData> sales = new LinkedHashMap<>();
+        Map<String, AuctionData> auctions = new LinkedHashMap<>();
+        loadSales(sales, worlds);
+        loadAuctions(auctions, worlds);
+
+        int replayed = journal.replay((type, in) -> applyRecord(sales, auctions, worlds, type, in));
+        boolean dirty = journal.hasData();
+
+        try {
+            journal.open();
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open market journal: " + e.getMessage());
+        }
+
+        if (replayed > 0) {
+            plugin.getLogger().info("Replayed " + replayed + " market journal records.");
+        }
+        if (dirty) {
+            // Also clears any torn tail so new records are never appended after it
+            writeSnapshots(sales.values(), auctions.values());
+        }
+
+        sales.values().forEach(saleConsumer);
+        auctions.values().forEach(auctionConsumer);
+    }
+
+    @Override
+    public void saveSale(SaleData sale) {
+        appendRecord(MarketJournal.SALE_PUT, sale::write);
+    }
+
+    @Override
+    public void removeSale(String id) {
+        appendRecord(MarketJournal.SALE_REMOVE, out -> out.writeUTF(id));
+    }
+
+    @Override
+    public void saveAuction(AuctionData auction) {
+        appendRecord(MarketJournal.AUCTION_PUT, auction::write);
+    }
+
+    @Override
+    public void removeAuction(String id) {
+        appendRecord(MarketJournal.AUCTION_REMOVE, out -> out.writeUTF(id));
+    }
+
+    @Override
+    public void addBid(AuctionData auction, BidData bid) {
+        appendRecord(MarketJournal.BID_ADD, out -> {
+            out.writeUTF(auction.getId());
+            bid.write(out);
+        });
+    }
+
+    /**
+     * Fold the journal into new snapshots if anything changed since the last one.
+     * The journal is only cleared once the snapshots are on disk.
+     */
+    @Override
+    public void checkpoint(Collection<SaleData> sales, Collection<AuctionData> auctions) {
+        if (pendingRecords > 0) {
+            writeSnapshots(sales, auctions);
+        }
+    }
+
+    private void writeSnapshots(Collection<SaleData> sales, Collection<AuctionData> auctions) {
+        pendingRecords = 0;
+
+        List<SaleData> saleSnapshot = new ArrayList<>(sales);
+        List<AuctionData> auctionSnapshot = new ArrayList<>(auctions.size());
+        for (AuctionData auction : auctions) {
+            auctionSnapshot.add(auction.copy());
+        }
+
+        persistence.execute(() -> {
+            try {
+                saveSales(saleSnapshot);
+                saveAuctions(auctionSnapshot);
+                journal.reset();
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to save market listings: " + e.getMessage());
+            }
+        });
+    }
+
+    private void appendRecord(byte type, MarketJournal.RecordWriter writer) {
+        byte[] frame;
+        try {
+            frame = MarketJournal.encode(type, writer);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to encode market journal record: " + e.getMessage());
+            return;
+        }
+        pendingRecords++;
+        persistence.execute(() -> journal.append(frame));
+    }
+
+    private void applyRecord(Map<String, SaleData> sales, Map<String, AuctionData> auctions,
+                             Function<String, World> worlds, byte type, DataInput in) throws IOException {
+        switch (type) {
+            case MarketJournal.SALE_PUT, MarketJournal.LEGACY_SALE_PUT -> {
+                SaleData sale = SaleData.read(in, worlds, type == MarketJournal.SALE_PUT);
+                if (sale != null) {
+                    sales.put(sale.getId(), sale);
+                }
+            }
+            case MarketJournal.SALE_REMOVE -> sales.remove(in.readUTF());
+            case MarketJournal.AUCTION_PUT, MarketJournal.LEGACY_AUCTION_PUT -> {
+                AuctionData auction = AuctionData.read(in, worlds, type == MarketJournal.AUCTION_PUT);
+                if (auction != null) {
+                    auctions.put(auction.getId(), auction);
+                }
+            }
+            case MarketJournal.AUCTION_REMOVE -> auctions.remove(in.readUTF());
+            case MarketJournal.BID_ADD -> {
+                AuctionData auction = auctions.get(in.readUTF());
+                BidData bid = BidData.read(in);
+                // A bid may already be in the snapshot if a compaction was interrupted
+                if (auction != null && !auction.hasBid(bid)) {
+                    auction.addBid(bid);
+                }
+            }
+            default -> throw new IOException("Unknown market journal record type " + type);
+        }
+    }
+
+    private void loadSales(Map<String, SaleData> sales, Function<String, World> worlds) {
+        if (!salesFile.exists()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(salesFile);
+        ConfigurationSection listingsSection = config.getConfigurationSection("listings");
+
+        if (listingsSection == null) {
+            return;
+        }
+
+        for (String id : listingsSection.getKeys(false)) {
+            SaleData sale = SaleData.load(id, listingsSection.getConfigurationSection(id), worlds);
+            if (sale != null) {
+                sales.put(id, sale);
+            }
+        }
+    }
+
+    private void loadAuctions(Map<String, AuctionData> auctions, Function<String, World> worlds) {
+        if (!auctionsFile.exists()) {
+            return;
+        }
+
+        YamlConfiguration config = YamlConfiguration.loadConfiguration(auctionsFile);
+        ConfigurationSection listingsSection = config.getConfigurationSection("listings");
+
+        if (listingsSection == null) {
+            return;
+        }
+
+        for (String id : listingsSection.getKeys(false)) {
+            AuctionData auction = AuctionData.load(id, listingsSection.getConfigurationSection(id), worlds);
+            if (auction != null) {
+                auctions.put(id, auction);
+            }
+        }
+    }
+
+    private void saveSales(Collection<SaleData> snapshot) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        ConfigurationSection listingsSection = config.createSection("listings");
+
+        for (SaleData sale : snapshot) {
+            ConfigurationSection saleSection = listingsSection.createSection(sale.getId());
+            sale.save(saleSection);
+        }
+
+        AtomicFiles.write(salesFile, config.saveToString());
+    }
+
+    private void saveAuctions(Collection<AuctionData> snapshot) throws IOException {
+        YamlConfiguration config = new YamlConfiguration();
+        ConfigurationSection listingsSection = config.createSection("listings");
+
+        for (AuctionData auction : snapshot) {
+            ConfigurationSection auctionSection = listingsSection.createSection(auction.getId());
+            auction.save(auctionSection);
+        }
+
+        AtomicFiles.write(auctionsFile, config.saveToString());
+    }
+
+    // ==================== TRANSACTIONS ====================
+
+    /**
+     * Open the transaction log, importing transactions.yml into it the first time.
+     */
+    private void openTransactionLog() {
+        try {
+            transactionLog.open();
+            if (transactionLog.isEmpty() && transactionsFile.exists()) {
+                importTransactionsFile();
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to open transaction log: " + e.getMessage());
+        }
+        transactionCounter = transactionLog.getCounter();
+    }
+
+    private void importTransactionsFile() throws IOException {
+        YamlConfiguration logConfig = YamlConfiguration.loadConfiguration(transactionsFile);
+        ConfigurationSection section = logConfig.getConfigurationSection("transactions");
+        int imported = 0;
+        if (section != null) {
+            for (String txId : section.getKeys(false)) {
+                TransactionRecord record = TransactionRecord.load(txId, section.getConfigurationSection(txId));
+                if (record != null) {
+                    transactionLog.append(record);
+                    imported++;
+                }
+            }
+        }
+        transactionLog.raiseCounter(logConfig.getInt("_counter", 0));
+        transactionLog.close();
+        transactionLog.open();
+
+        if (!transactionsFile.renameTo(new File(transactionsFile.getParentFile(), "transactions.yml.imported"))) {
+            plugin.getLogger().warning("Could not rename transactions.yml after import.");
+        }
+        plugin.getLogger().info("Imported " + imported + " transactions from transactions.yml into the transaction log.");
+    }
+
+    /**
+     * Visit every stored transaction, oldest first. Only valid while loading,
+     * e.g. when importing into market.db.
+     */
+    public void forEachTransaction(Consumer<TransactionRecord> consumer) {
+        try {
+            transactionLog.forEach(consumer);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read transaction log: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public List<TransactionRecord> loadRecentTransactions(int count) {
+        try {
+            return transactionLog.findRecent(count, Integer.MAX_VALUE);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read transaction log: " + e.getMessage());
+            return List.of();
+        }
+    }
+
+    @Override
+    public void loadPlayerTransactions(ObjIntConsumer<UUID> consumer) {
+        try {
+            transactionLog.forEachPosting(consumer);
+        } catch (IOException e) {
+            plugin.getLogger().severe("Failed to read transaction log: " + e.getMessage());
+        }
+    }
+
+    @Override
+    public int getTransactionCounter() {
+        return transactionCounter;
+    }
+
+    @Override
+    public void appendTransaction(TransactionRecord record) {
+        transactionCounter = Math.max(transactionCounter, record.getSequence());
+        persistence.execute(() -> {
+            try {
+                transactionLog.append(record);
+            } catch (IOException e) {
+                plugin.getLogger().severe("Failed to log transaction " + record.getTxId() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void findTransactions(int[] sequences, Consumer<List<TransactionRecord>> callback) {
+        persistence.query("look up transactions", () -> transactionLog.find(sequences), callback);
+    }
+
+    @Override
+    public void findRecentTransactions(int count, int beforeSequence, Consumer<List<TransactionRecord>> callback) {
+        persistence.query("query transactions", () -> transactionLog.findRecent(count, beforeSequence), callback);
+    }
+
+
+    @Override
+    public void close() {
+        persistence.execute(() -> {
+            journal.close();
+            transactionLog.close();
+        });
+    }
+}
@@ -84,7 +84,7 @@ public class AuctionMenu {
                 .decoration(TextDecoration.ITALIC, false)
                 .append(Component.text(auction.getTimeRemainingFormatted()).color(NamedTextColor.AQUA)));
 
-        int bidCount = auction.getBids().size();
+        int bidCount = auction.getBidCount();
         lore.add(Component.text("Total Bids: ")
                 .color(NamedTextColor.GRAY)
                 .decoration(TextDecoration.ITALIC, false)
@@ -4,6 +4,7 @@ import com.haksnbot.ffclaims.FFClaimsPlugin;
 import com.haksnbot.ffclaims.market.data.AuctionData;
 import com.haksnbot.ffclaims.market.managers.AuctionManager;
 import com.haksnbot.ffclaims.market.signs.SignFormatter;
+import com.haksnbot.ffclaims.market.signs.SignInputLexer;
 import de.rapha149.signgui.SignGUI;
 import de.rapha149.signgui.SignGUIAction;
 import de.rapha149.signgui.exception.SignGUIVersionException;
@@ -63,14 +64,13 @@ public class BidInputHandler {
         }
 
         // Parse the bid amount
-        double bidAmount;
-        try {
-            bidAmount = SignFormatter.parsePrice(bidInput);
-        } catch (NumberFormatException e) {
+        SignInputLexer.Lexed bid = SignInputLexer.price(bidInput);
+        if (!bid.isOk()) {
             player.sendMessage(plugin.getConfigManager().getPrefix() +
                     plugin.getConfigManager().getMessage("market.invalid-price"));
             return;
         }
+        double bidAmount = bid.value();
 
         // Place the bid
         AuctionManager.BidResult result = plugin.getAuctionManager().placeBid(player, currentAuction, bidAmount);
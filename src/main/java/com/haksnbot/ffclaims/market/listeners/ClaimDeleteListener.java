@@ -0,0 +1,29 @@
+package com.haksnbot.ffclaims.market.listeners;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import me.ryanhamshire.GriefPrevention.Claim;
+import me.ryanhamshire.GriefPrevention.events.ClaimDeletedEvent;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+
+/**
+ * Cancels the listings of claims that GriefPrevention deletes (abandoned, expired or removed by an admin).
+ */
+public class ClaimDeleteListener implements Listener {
+
+    private final FFClaimsPlugin plugin;
+
+    public ClaimDeleteListener(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onClaimDeleted(ClaimDeletedEvent event) {
+        Claim claim = event.getClaim();
+        if (claim == null || claim.getID() == null) {
+            return;
+        }
+        plugin.getListingManager().cancelListingsOnClaim(claim.getID());
+    }
+}
@@ -0,0 +1,35 @@
+package com.haksnbot.ffclaims.market.listeners;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import org.bukkit.Chunk;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+
+/**
+ * Brings listing signs up to date when their chunk loads: applies sign writes that were queued
+ * while it was unloaded and refreshes auction countdowns. Runs a tick after the load, since
+ * blocks should not be changed from within the load event.
+ */
+public class ListingSignChunkListener implements Listener {
+
+    private final FFClaimsPlugin plugin;
+
+    public ListingSignChunkListener(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        Chunk chunk = event.getChunk();
+        if (!plugin.getSignManager().hasSignWork(event.getWorld(), chunk.getChunkKey())) {
+            return;
+        }
+        plugin.getServer().getScheduler().runTask(plugin, () -> {
+            if (chunk.isLoaded()) {
+                plugin.getSignManager().onChunkLoaded(chunk);
+            }
+        });
+    }
+}
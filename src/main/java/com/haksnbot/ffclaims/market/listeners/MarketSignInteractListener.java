@@ -3,7 +3,6 @@ package com.haksnbot.ffclaims.market.listeners;
 import com.haksnbot.ffclaims.FFClaimsPlugin;
 import com.haksnbot.ffclaims.market.data.AuctionData;
 import com.haksnbot.ffclaims.market.data.SaleData;
-import org.bukkit.Location;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.entity.Player;
@@ -28,13 +27,8 @@ public class MarketSignInteractListener implements Listener {
         }
 
         Block block = event.getClickedBlock();
-        if (block == null || !(block.getState() instanceof Sign)) {
-            return;
-        }
-
-        Location signLocation = block.getLocation();
-
-        if (!plugin.getMarketDataManager().isListingSign(signLocation)) {
+        if (block == null || !plugin.getMarketDataManager().isListingSign(block)
+                || !(block.getState() instanceof Sign)) {
             return;
         }
 
@@ -47,13 +41,13 @@ public class MarketSignInteractListener implements Listener {
             return;
         }
 
-        SaleData sale = plugin.getMarketDataManager().getSaleBySign(signLocation);
+        SaleData sale = plugin.getMarketDataManager().getSaleBySign(block);
         if (sale != null) {
             handleSaleSignClick(player, sale);
             return;
         }
 
-        AuctionData auction = plugin.getMarketDataManager().getAuctionBySign(signLocation);
+        AuctionData auction = plugin.getMarketDataManager().getAuctionBySign(block);
         if (auction != null) {
             handleAuctionSignClick(player, auction);
         }
@@ -79,7 +73,7 @@ public class MarketSignInteractListener implements Listener {
         if (auction.getSellerUUID().equals(player.getUniqueId())) {
             player.sendMessage(plugin.getConfigManager().getPrefix() +
                     "This is your auction listing. Break the sign to cancel.");
-            int bidCount = auction.getBids().size();
+            int bidCount = auction.getBidCount();
             player.sendMessage(plugin.getConfigManager().getPrefix() +
                     "Current bids: " + bidCount);
             return;
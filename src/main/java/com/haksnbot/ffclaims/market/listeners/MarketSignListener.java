@@ -151,20 +151,15 @@ public class MarketSignListener implements Listener {
 
     @EventHandler(priority = EventPriority.HIGH, ignoreCancelled = true)
     public void onBlockBreak(BlockBreakEvent event) {
+        // Runs for every block broken, so check the index before taking a block state snapshot
         Block block = event.getBlock();
-        if (!(block.getState() instanceof Sign)) {
-            return;
-        }
-
-        Location signLocation = block.getLocation();
-
-        if (!plugin.getMarketDataManager().isListingSign(signLocation)) {
+        if (!plugin.getMarketDataManager().isListingSign(block) || !(block.getState() instanceof Sign)) {
             return;
         }
 
         Player player = event.getPlayer();
 
-        SaleData sale = plugin.getMarketDataManager().getSaleBySign(signLocation);
+        SaleData sale = plugin.getMarketDataManager().getSaleBySign(block);
         if (sale != null) {
             if (!sale.getSellerUUID().equals(player.getUniqueId()) &&
                     !player.hasPermission("ffclaims.admin")) {
@@ -180,7 +175,7 @@ public class MarketSignListener implements Listener {
             return;
         }
 
-        AuctionData auction = plugin.getMarketDataManager().getAuctionBySign(signLocation);
+        AuctionData auction = plugin.getMarketDataManager().getAuctionBySign(block);
         if (auction != null) {
             if (!auction.getSellerUUID().equals(player.getUniqueId()) &&
                     !player.hasPermission("ffclaims.admin")) {
@@ -47,6 +47,7 @@ public class AuctionManager {
                 buyNowPrice,
                 signLocation,
                 claimLocation,
+                claim.getID(),
                 now,
                 now + durationMs,
                 area,
@@ -111,8 +112,7 @@ public class AuctionManager {
                 System.currentTimeMillis()
         );
 
-        auction.addBid(bid);
-        plugin.getMarketDataManager().updateAuction(auction);
+        plugin.getMarketDataManager().addBid(auction, bid);
 
         String msg = plugin.getConfigManager().getMessage("market.bid-placed")
                 .replace("%amount%", vault.format(amount));
@@ -294,7 +294,7 @@ public class AuctionManager {
         plugin.getTransactionLogger().logAuction(
                 auction.getSellerUUID(), auction.getSellerName(),
                 highestBid.getBidderUUID(), highestBid.getBidderName(),
-                highestBid.getAmount(), vickreyPrice, auction.getBids().size(),
+                highestBid.getAmount(), vickreyPrice, auction.getBidCount(),
                 claimArea, auction.getDimensions(),
                 claimLocStr, claimName
         );
@@ -342,12 +342,10 @@ public class AuctionManager {
     }
 
     /**
-     * Update all auction signs (to refresh time remaining).
+     * Refresh the time remaining on auction signs whose countdown has changed.
      */
     public void updateAuctionSigns() {
-        for (AuctionData auction : plugin.getMarketDataManager().getActiveAuctions()) {
-            plugin.getSignManager().updateAuctionSign(auction.getSignLocation(), auction);
-        }
+        plugin.getSignManager().refreshAuctionSigns(plugin.getMarketDataManager().getActiveAuctions());
     }
 
     private void notifyPlayer(UUID playerUUID, String message) {
@@ -50,8 +50,7 @@ public class ListingManager {
         }
 
         // Check if already listed
-        Location claimLoc = gpHook.getLesserBoundaryCorner(claim);
-        if (plugin.getMarketDataManager().hasListingAtClaim(claimLoc)) {
+        if (plugin.getMarketDataManager().hasListingOnClaim(claim.getID())) {
             return plugin.getConfigManager().getMessage("market.already-listed");
         }
 
@@ -135,6 +134,21 @@ public class ListingManager {
         return false;
     }
 
+    /**
+     * Cancel any sale or running auction on a claim, e.g. because the claim was deleted.
+     */
+    public void cancelListingsOnClaim(long claimId) {
+        SaleData sale = plugin.getMarketDataManager().getSaleByClaim(claimId);
+        if (sale != null) {
+            plugin.getSaleManager().cancelSale(sale.getId());
+        }
+
+        AuctionData auction = plugin.getMarketDataManager().getAuctionByClaim(claimId);
+        if (auction != null) {
+            plugin.getAuctionManager().cancelAuction(auction.getId());
+        }
+    }
+
     /**
      * Get listing info for display.
      */
@@ -41,6 +41,7 @@ public class SaleManager {
                 price,
                 signLocation,
                 claimLocation,
+                claim.getID(),
                 System.currentTimeMillis(),
                 area,
                 dimensions
@@ -1,171 +1,203 @@
 package com.haksnbot.ffclaims.market.signs;
 
 import com.haksnbot.ffclaims.market.data.AuctionData;
+import com.haksnbot.ffclaims.market.data.BidData;
 import com.haksnbot.ffclaims.market.data.SaleData;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
 import net.kyori.adventure.text.format.TextDecoration;
 
-import java.text.DecimalFormat;
+import java.util.Collections;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+/**
+ * Sign text and price formatting. Thread-safe: number formatting keeps no shared state, and
+ * the lines of a listing that never change are built once and shared, so refreshing a sign
+ * only builds its countdown line, and only when the countdown has moved on.
+ */
 public class SignFormatter {
 
-    private static final DecimalFormat PRICE_FORMAT = new DecimalFormat("#,###");
+    /**
+     * Countdown line of auction signs whose countdown is only shown per player.
+     */
+    public static final String STATIC_TIME_LINE = "Click to bid";
+
+    private static final Component SALE_HEADER = Component.text("[For Sale]")
+            .color(NamedTextColor.DARK_BLUE)
+            .decoration(TextDecoration.BOLD, true);
+    private static final Component AUCTION_HEADER = Component.text("[Auction]")
+            .color(NamedTextColor.DARK_BLUE)
+            .decoration(TextDecoration.BOLD, true);
+    private static final Component STATIC_TIME_COMPONENT = Component.text(STATIC_TIME_LINE)
+            .color(NamedTextColor.DARK_GRAY);
+
+    // Fixed lines per listing object. Listings are replaced rather than changed, and entries
+    // go once a listing is no longer referenced.
+    private static final Map<SaleData, Component[]> SALE_LINES = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Map<AuctionData, AuctionLines> AUCTION_LINES = Collections.synchronizedMap(new WeakHashMap<>());
 
     /**
      * Format a price for display (shortened).
      */
     public static String formatPrice(double price) {
+        StringBuilder out = new StringBuilder(12).append('$');
         if (price >= 1_000_000) {
-            return "$" + PRICE_FORMAT.format(price / 1_000_000) + "M";
+            appendGrouped(out, price / 1_000_000).append('M');
         } else if (price >= 1_000) {
             double k = price / 1_000;
             if (k == Math.floor(k)) {
-                return "$" + (int) k + "k";
+                out.append((int) k);
+            } else {
+                // One decimal, rounded half up
+                long tenths = Math.round(k * 10);
+                out.append(tenths / 10).append('.').append(tenths % 10);
             }
-            return "$" + String.format("%.1fk", k);
+            out.append('k');
         } else {
-            return "$" + PRICE_FORMAT.format(price);
+            appendGrouped(out, price);
         }
+        return out.toString();
     }
 
     /**
      * Format a price for full display (no shortening).
      */
     public static String formatPriceFull(double price) {
-        return "$" + PRICE_FORMAT.format(price);
+        return appendGrouped(new StringBuilder(16).append('$'), price).toString();
+    }
+
+    /**
+     * Append a value rounded to a whole number (half even) with comma thousands separators.
+     */
+    private static StringBuilder appendGrouped(StringBuilder out, double value) {
+        long whole = (long) Math.rint(value);
+        if (whole < 0) {
+            out.append('-');
+            whole = -whole;
+        }
+        String digits = Long.toString(whole);
+        int lead = digits.length() % 3 == 0 ? 3 : digits.length() % 3;
+        out.append(digits, 0, lead);
+        for (int i = lead; i < digits.length(); i += 3) {
+            out.append(',').append(digits, i, i + 3);
+        }
+        return out;
     }
 
     /**
      * Get the sign lines for a sale listing.
      */
     public static Component[] getSaleSignLines(SaleData sale) {
-        return new Component[] {
-            Component.text("[For Sale]")
-                .color(NamedTextColor.DARK_BLUE)
-                .decoration(TextDecoration.BOLD, true),
-            Component.text(formatPriceFull(sale.getPrice()))
-                .color(NamedTextColor.BLACK),
-            Component.text(truncateName(sale.getSellerName()))
-                .color(NamedTextColor.BLACK),
-            Component.text(sale.getDimensions())
-                .color(NamedTextColor.DARK_GRAY)
-        };
+        Component[] lines = SALE_LINES.get(sale);
+        if (lines == null) {
+            lines = new Component[] {
+                SALE_HEADER,
+                Component.text(formatPriceFull(sale.getPrice()))
+                    .color(NamedTextColor.BLACK),
+                Component.text(truncateName(sale.getSellerName()))
+                    .color(NamedTextColor.BLACK),
+                Component.text(sale.getDimensions())
+                    .color(NamedTextColor.DARK_GRAY)
+            };
+            SALE_LINES.put(sale, lines);
+        }
+        return lines.clone();
     }
 
     /**
      * Get the sign lines for an auction listing.
      */
     public static Component[] getAuctionSignLines(AuctionData auction) {
-        String line2 = "Min: " + formatPrice(auction.getMinimumBid());
-        String line3;
-        if (auction.hasBuyNow()) {
-            line3 = "BuyNow: " + formatPrice(auction.getBuyNowPrice());
-        } else {
-            line3 = auction.getSellerName();
-        }
-        String line4 = "Ends: " + auction.getTimeRemainingFormatted();
-
-        return new Component[] {
-            Component.text("[Auction]")
-                .color(NamedTextColor.DARK_BLUE)
-                .decoration(TextDecoration.BOLD, true),
-            Component.text(line2)
-                .color(NamedTextColor.BLACK),
-            Component.text(truncateName(line3))
-                .color(NamedTextColor.BLACK),
-            Component.text(line4)
-                .color(NamedTextColor.DARK_GRAY)
-        };
+        return getAuctionSignLines(auction, null);
     }
 
     /**
-     * Truncate a name to fit on a sign line.
+     * Get the sign lines for an auction listing as one player sees them: with their own bid
+     * in place of the buy-now price or seller, if they have bid.
      */
-    private static String truncateName(String name) {
-        if (name.length() > 15) {
-            return name.substring(0, 14) + "\u2026";
+    public static Component[] getAuctionSignLines(AuctionData auction, BidData viewerBid) {
+        AuctionLines cached = auctionLines(auction);
+        Component[] lines = cached.fixed.clone();
+        if (viewerBid != null) {
+            lines[2] = Component.text(truncateName("Bid: " + formatPrice(viewerBid.getAmount())))
+                    .color(NamedTextColor.BLACK);
         }
-        return name;
+        lines[3] = cached.countdown(auction).component();
+        return lines;
     }
 
     /**
-     * Parse a price string entered by a player.
+     * Get the sign lines written to the world when countdowns are shown per player: no
+     * countdown, so the block never needs rewriting while the auction runs.
      */
-    public static double parsePrice(String input) throws NumberFormatException {
-        if (input == null || input.isEmpty()) {
-            throw new NumberFormatException("Empty price");
-        }
-
-        String cleaned = input.trim()
-            .replace("$", "")
-            .replace(",", "")
-            .replace(" ", "")
-            .toLowerCase();
+    public static Component[] getStaticAuctionSignLines(AuctionData auction) {
+        return auctionLines(auction).fixed.clone();
+    }
 
-        if (cleaned.isEmpty()) {
-            throw new NumberFormatException("Empty price after cleaning");
-        }
+    /**
+     * The countdown line of an auction sign, the only line that changes while it runs.
+     */
+    public static String getAuctionTimeLine(AuctionData auction) {
+        return auctionLines(auction).countdown(auction).line();
+    }
 
-        double multiplier = 1.0;
-
-        if (cleaned.endsWith("k")) {
-            multiplier = 1_000;
-            cleaned = cleaned.substring(0, cleaned.length() - 1);
-        } else if (cleaned.endsWith("m")) {
-            multiplier = 1_000_000;
-            cleaned = cleaned.substring(0, cleaned.length() - 1);
-        } else if (cleaned.endsWith("b")) {
-            multiplier = 1_000_000_000;
-            cleaned = cleaned.substring(0, cleaned.length() - 1);
+    private static AuctionLines auctionLines(AuctionData auction) {
+        AuctionLines cached = AUCTION_LINES.get(auction);
+        if (cached == null) {
+            String line3 = auction.hasBuyNow()
+                    ? "BuyNow: " + formatPrice(auction.getBuyNowPrice())
+                    : auction.getSellerName();
+            cached = new AuctionLines(new Component[] {
+                AUCTION_HEADER,
+                Component.text("Min: " + formatPrice(auction.getMinimumBid()))
+                    .color(NamedTextColor.BLACK),
+                Component.text(truncateName(line3))
+                    .color(NamedTextColor.BLACK),
+                STATIC_TIME_COMPONENT
+            });
+            AUCTION_LINES.put(auction, cached);
         }
-
-        double value = Double.parseDouble(cleaned);
-        return value * multiplier;
+        return cached;
     }
 
     /**
-     * Parse a duration string (e.g., "2d", "48h", "1d12h").
+     * An auction's fixed sign lines (countdown line static) and its latest countdown line.
      */
-    public static long parseDuration(String input) throws IllegalArgumentException {
-        if (input == null || input.isEmpty()) {
-            throw new IllegalArgumentException("Empty duration");
-        }
+    private static final class AuctionLines {
 
-        String cleaned = input.trim().toLowerCase();
-        long totalMs = 0;
+        final Component[] fixed;
+        private volatile Countdown countdown;
 
-        StringBuilder number = new StringBuilder();
-        for (char c : cleaned.toCharArray()) {
-            if (Character.isDigit(c) || c == '.') {
-                number.append(c);
-            } else {
-                if (number.length() == 0) {
-                    continue;
-                }
-
-                double value = Double.parseDouble(number.toString());
-                number = new StringBuilder();
-
-                switch (c) {
-                    case 'd' -> totalMs += (long) (value * 24 * 60 * 60 * 1000);
-                    case 'h' -> totalMs += (long) (value * 60 * 60 * 1000);
-                    case 'm' -> totalMs += (long) (value * 60 * 1000);
-                    case 's' -> totalMs += (long) (value * 1000);
-                    default -> throw new IllegalArgumentException("Unknown duration unit: " + c);
-                }
-            }
+        AuctionLines(Component[] fixed) {
+            this.fixed = fixed;
         }
 
-        // Handle case where only a number is provided (assume hours)
-        if (number.length() > 0 && totalMs == 0) {
-            totalMs = (long) (Double.parseDouble(number.toString()) * 60 * 60 * 1000);
+        /**
+         * The countdown line, rebuilt only once the time remaining reads differently.
+         */
+        Countdown countdown(AuctionData auction) {
+            String remaining = auction.getTimeRemainingFormatted();
+            Countdown current = countdown;
+            if (current == null || !current.remaining().equals(remaining)) {
+                String line = "Ends: " + remaining;
+                current = new Countdown(remaining, line, Component.text(line).color(NamedTextColor.DARK_GRAY));
+                countdown = current;
+            }
+            return current;
         }
+    }
 
-        if (totalMs <= 0) {
-            throw new IllegalArgumentException("Invalid duration");
-        }
+    private record Countdown(String remaining, String line, Component component) {
+    }
 
-        return totalMs;
+    /**
+     * Truncate a name to fit on a sign line.
+     */
+    private static String truncateName(String name) {
+        if (name.length() > 15) {
+            return name.substring(0, 14) + "\u2026";
+        }
+        return name;
     }
 }
@@ -0,0 +1,252 @@
+package com.haksnbot.ffclaims.market.signs;
+
+/**
+ * Single-pass scanner for what players type on listing signs and in the bid input:
+ * prices such as "$25,000", "25k", "1.5M" and durations such as "2d", "48h", "1d12h".
+ * Failures come back as a {@link Lexed} with an {@link Error} and the position it was found at,
+ * never as exceptions. Stateless and thread-safe.
+ */
+public final class SignInputLexer {
+
+    private static final long SECOND_MS = 1000L;
+    private static final long MINUTE_MS = 60 * SECOND_MS;
+    private static final long HOUR_MS = 60 * MINUTE_MS;
+    private static final long DAY_MS = 24 * HOUR_MS;
+
+    private SignInputLexer() {
+    }
+
+    /**
+     * What went wrong while scanning a value.
+     */
+    public enum Error {
+        EMPTY,
+        BAD_NUMBER,
+        BAD_SUFFIX,
+        BAD_UNIT
+    }
+
+    /**
+     * A scanned value, or the error and the index in the input where it was found.
+     */
+    public record Lexed(double value, Error error, int position) {
+
+        static Lexed of(double value) {
+            return new Lexed(value, null, -1);
+        }
+
+        static Lexed error(Error error, int position) {
+            return new Lexed(0, error, position);
+        }
+
+        public boolean isOk() {
+            return error == null;
+        }
+
+        /**
+         * Duration value in milliseconds.
+         */
+        public long millis() {
+            return (long) value;
+        }
+
+        /**
+         * Player-facing description of the error, quoting the offending character.
+         */
+        public String describe(String input) {
+            String at = input != null && position >= 0 && position < input.length()
+                    ? " '" + input.charAt(position) + "'"
+                    : "";
+            return switch (error) {
+                case EMPTY -> "Nothing entered";
+                case BAD_NUMBER -> "Invalid number" + at;
+                case BAD_SUFFIX -> "Unknown amount suffix" + at + " (use k, m or b)";
+                case BAD_UNIT -> "Unknown duration unit" + at + " (use d, h, m or s)";
+            };
+        }
+    }
+
+    /**
+     * Scan a price: digits with an optional decimal point and an optional k, m or b multiplier.
+     * Dollar signs, commas and spaces are ignored; case does not matter.
+     */
+    public static Lexed price(String input) {
+        return price(input, 0);
+    }
+
+    /**
+     * Scan a price starting at {@code from}, e.g. just after a "min:" key.
+     */
+    public static Lexed price(String input, int from) {
+        if (input == null) {
+            return Lexed.error(Error.EMPTY, -1);
+        }
+
+        StringBuilder number = null;
+        boolean digits = false;
+        boolean point = false;
+        double multiplier = 1;
+        int suffixAt = -1;
+
+        for (int i = from; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c == '$' || c == ',' || Character.isWhitespace(c)) {
+                continue;
+            }
+            if (suffixAt >= 0) {
+                // Nothing may follow the multiplier
+                return Lexed.error(Error.BAD_SUFFIX, suffixAt);
+            }
+            if (c >= '0' && c <= '9' || c == '.') {
+                if (c == '.') {
+                    if (point) {
+                        return Lexed.error(Error.BAD_NUMBER, i);
+                    }
+                    point = true;
+                } else {
+                    digits = true;
+                }
+                if (number == null) {
+                    number = new StringBuilder(input.length() - i);
+                }
+                number.append(c);
+                continue;
+            }
+            if (number == null) {
+                return Lexed.error(Error.BAD_NUMBER, i);
+            }
+            switch (Character.toLowerCase(c)) {
+                case 'k' -> multiplier = 1_000;
+                case 'm' -> multiplier = 1_000_000;
+                case 'b' -> multiplier = 1_000_000_000;
+                default -> {
+                    return Lexed.error(Error.BAD_SUFFIX, i);
+                }
+            }
+            suffixAt = i;
+        }
+
+        if (number == null) {
+            return Lexed.error(Error.EMPTY, from);
+        }
+        if (!digits) {
+            return Lexed.error(Error.BAD_NUMBER, from);
+        }
+        // Only digits and at most one point are left, which always parse
+        return Lexed.of(Double.parseDouble(number.toString()) * multiplier);
+    }
+
+    /**
+     * Scan a duration: numbers each followed by d, h, m or s, e.g. "1d12h" or "1.5d". Letters
+     * after a unit are skipped, so "2 days" and "30 mins" also work. A lone number is hours.
+     * The value is in milliseconds and always positive when there is no error.
+     */
+    public static Lexed duration(String input) {
+        if (input == null) {
+            return Lexed.error(Error.EMPTY, -1);
+        }
+
+        double total = 0;
+        int numberStart = -1;
+        int numberEnd = -1;
+        boolean point = false;
+        boolean sawNumber = false;
+
+        for (int i = 0; i < input.length(); i++) {
+            char c = input.charAt(i);
+            if (c >= '0' && c <= '9' || c == '.') {
+                if (numberEnd >= 0) {
+                    // Two numbers with only a space between them
+                    return Lexed.error(Error.BAD_UNIT, numberEnd);
+                }
+                if (numberStart < 0) {
+                    numberStart = i;
+                    point = false;
+                    sawNumber = true;
+                }
+                if (c == '.') {
+                    if (point) {
+                        return Lexed.error(Error.BAD_NUMBER, i);
+                    }
+                    point = true;
+                }
+                continue;
+            }
+            if (Character.isWhitespace(c)) {
+                if (numberStart >= 0 && numberEnd < 0) {
+                    numberEnd = i; // The unit may follow after a space, as in "2 days"
+                }
+                continue;
+            }
+            if (numberStart < 0) {
+                continue; // The rest of a unit word such as "days"
+            }
+
+            long unit = switch (Character.toLowerCase(c)) {
+                case 'd' -> DAY_MS;
+                case 'h' -> HOUR_MS;
+                case 'm' -> MINUTE_MS;
+                case 's' -> SECOND_MS;
+                default -> -1;
+            };
+            if (unit < 0) {
+                return Lexed.error(Error.BAD_UNIT, i);
+            }
+            Lexed number = number(input, numberStart, numberEnd >= 0 ? numberEnd : i);
+            if (!number.isOk()) {
+                return number;
+            }
+            total += (long) (number.value() * unit);
+            numberStart = -1;
+            numberEnd = -1;
+        }
+
+        // A number without a unit counts as hours, unless units were given before it
+        if (numberStart >= 0 && total == 0) {
+            Lexed number = number(input, numberStart, numberEnd >= 0 ? numberEnd : input.length());
+            if (!number.isOk()) {
+                return number;
+            }
+            total = (long) (number.value() * HOUR_MS);
+        }
+
+        if (total <= 0) {
+            return Lexed.error(sawNumber ? Error.BAD_NUMBER : Error.EMPTY, 0);
+        }
+        return Lexed.of(total);
+    }
+
+    /**
+     * Whether a line starts like a duration: a number directly followed by d, h, m or s.
+     */
+    public static boolean looksLikeDuration(String input) {
+        int i = 0;
+        while (i < input.length() && (input.charAt(i) >= '0' && input.charAt(i) <= '9' || input.charAt(i) == '.')) {
+            i++;
+        }
+        if (i == 0 || i == input.length()) {
+            return false;
+        }
+        char unit = Character.toLowerCase(input.charAt(i));
+        return unit == 'd' || unit == 'h' || unit == 'm' || unit == 's';
+    }
+
+    /**
+     * Whether {@code input} starts with {@code key}, ignoring case.
+     */
+    public static boolean hasKey(String input, String key) {
+        return input.regionMatches(true, 0, key, 0, key.length());
+    }
+
+    /**
+     * Value of input[start, end), known to hold only digits and at most one point.
+     */
+    private static Lexed number(String input, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (input.charAt(i) != '.') {
+                return Lexed.of(Double.parseDouble(input.substring(start, end)));
+            }
+        }
+        return Lexed.error(Error.BAD_NUMBER, start);
+    }
+}
@@ -2,20 +2,59 @@ package com.haksnbot.ffclaims.market.signs;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
 import com.haksnbot.ffclaims.market.data.AuctionData;
+import com.haksnbot.ffclaims.market.data.MarketDataManager;
 import com.haksnbot.ffclaims.market.data.SaleData;
+import com.haksnbot.ffclaims.storage.AtomicFiles;
+import com.haksnbot.ffclaims.storage.PersistentStore;
+import com.haksnbot.ffclaims.util.BlockPositions;
+import com.haksnbot.ffclaims.util.LongObjectMap;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.serializer.plain.PlainTextComponentSerializer;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.block.Block;
 import org.bukkit.block.Sign;
 import org.bukkit.block.sign.Side;
-
-public class SignManager {
+import org.bukkit.entity.Player;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Reads and writes listing signs. Signs are never written in unloaded chunks: updates and
+ * removals for those are queued per chunk and applied when the chunk next loads. The queue is
+ * saved to pending-signs.dat, so writes still waiting at shutdown are applied after a restart.
+ */
+public class SignManager implements PersistentStore<List<SignManager.QueuedSignOp>> {
 
     private final FFClaimsPlugin plugin;
+    private final File pendingFile;
+
+    // Sign writes waiting for their chunk to load: world, chunk key, then block position
+    private final Map<UUID, LongObjectMap<LongObjectMap<PendingSignOp>>> pendingOps = new HashMap<>();
+
+    // Countdown last written to each auction's sign, by auction ID. Expiry times never change,
+    // so a sign is current until the rendered line's change time passes.
+    private final Map<String, RenderedCountdown> renderedCountdowns = new HashMap<>();
 
     public SignManager(FFClaimsPlugin plugin) {
         this.plugin = plugin;
+        this.pendingFile = new File(plugin.getDataFolder(), "pending-signs.dat");
     }
 
     /**
@@ -53,7 +92,11 @@ public class SignManager {
             throw new IllegalArgumentException("No price specified");
         }
 
-        double price = SignFormatter.parsePrice(priceStr);
+        SignInputLexer.Lexed lexed = SignInputLexer.price(priceStr);
+        if (!lexed.isOk()) {
+            throw new IllegalArgumentException("Invalid price: " + lexed.describe(priceStr));
+        }
+        double price = lexed.value();
 
         double minPrice = plugin.getConfigManager().getMinSalePrice();
         double maxPrice = plugin.getConfigManager().getMaxSalePrice();
@@ -82,26 +125,31 @@ public class SignManager {
         long durationMs = 0;
 
         for (int i = 1; i < lines.length; i++) {
-            String line = lines[i].trim().toLowerCase();
+            String line = lines[i].trim();
             if (line.isEmpty()) {
                 continue;
             }
 
-            if (line.startsWith("min:")) {
-                minimumBid = SignFormatter.parsePrice(line.substring(4));
-            } else if (line.startsWith("now:") || line.startsWith("buy:") || line.startsWith("buynow:")) {
-                String priceStr = line.contains(":") ? line.substring(line.indexOf(":") + 1) : line;
-                buyNowPrice = SignFormatter.parsePrice(priceStr);
-            } else if (line.matches("^[\\d.]+[dhms].*$")) {
-                durationMs = SignFormatter.parseDuration(line);
+            if (SignInputLexer.hasKey(line, "min:")) {
+                minimumBid = requirePrice(line, "min:".length(), "minimum bid");
+            } else if (SignInputLexer.hasKey(line, "now:") || SignInputLexer.hasKey(line, "buy:")
+                    || SignInputLexer.hasKey(line, "buynow:")) {
+                buyNowPrice = requirePrice(line, line.indexOf(':') + 1, "buy-now price");
+            } else if (SignInputLexer.looksLikeDuration(line)) {
+                SignInputLexer.Lexed duration = SignInputLexer.duration(line);
+                if (!duration.isOk()) {
+                    throw new IllegalArgumentException("Invalid duration: " + duration.describe(line));
+                }
+                durationMs = duration.millis();
             } else if (minimumBid == 0) {
-                try {
-                    minimumBid = SignFormatter.parsePrice(line);
-                } catch (NumberFormatException e) {
-                    try {
-                        durationMs = SignFormatter.parseDuration(line);
-                    } catch (IllegalArgumentException ex) {
-                        // Ignore
+                // An untagged line is the minimum bid, or else a duration such as "48"
+                SignInputLexer.Lexed price = SignInputLexer.price(line);
+                if (price.isOk()) {
+                    minimumBid = price.value();
+                } else {
+                    SignInputLexer.Lexed duration = SignInputLexer.duration(line);
+                    if (duration.isOk()) {
+                        durationMs = duration.millis();
                     }
                 }
             }
@@ -138,10 +186,22 @@ public class SignManager {
         return new AuctionSignInput(minimumBid, buyNowPrice, durationMs);
     }
 
+    private static double requirePrice(String line, int from, String what) {
+        SignInputLexer.Lexed price = SignInputLexer.price(line, from);
+        if (!price.isOk()) {
+            throw new IllegalArgumentException("Invalid " + what + ": " + price.describe(line));
+        }
+        return price.value();
+    }
+
     /**
      * Update a sign block with sale information.
      */
     public void updateSaleSign(Location signLocation, SaleData sale) {
+        if (!isChunkLoaded(signLocation)) {
+            defer(signLocation, PendingSignOp.UPDATE);
+            return;
+        }
         Block block = signLocation.getBlock();
         if (!(block.getState() instanceof Sign sign)) {
             return;
@@ -162,12 +222,20 @@ public class SignManager {
      * Update a sign block with auction information.
      */
     public void updateAuctionSign(Location signLocation, AuctionData auction) {
+        if (!isChunkLoaded(signLocation)) {
+            defer(signLocation, PendingSignOp.UPDATE);
+            return;
+        }
         Block block = signLocation.getBlock();
         if (!(block.getState() instanceof Sign sign)) {
             return;
         }
 
-        Component[] lines = SignFormatter.getAuctionSignLines(auction);
+        // With per-player countdowns the block gets static text that never goes stale
+        VirtualCountdownRenderer virtualCountdowns = plugin.getVirtualCountdownRenderer();
+        Component[] lines = virtualCountdowns != null
+                ? SignFormatter.getStaticAuctionSignLines(auction)
+                : SignFormatter.getAuctionSignLines(auction);
 
         sign.getSide(Side.FRONT).line(0, lines[0]);
         sign.getSide(Side.FRONT).line(1, lines[1]);
@@ -176,18 +244,278 @@ public class SignManager {
 
         sign.setWaxed(true);
         sign.update();
+
+        if (virtualCountdowns != null) {
+            renderedCountdowns.put(auction.getId(), new RenderedCountdown(SignFormatter.STATIC_TIME_LINE, Long.MAX_VALUE));
+            virtualCountdowns.forget(auction.getId());
+        } else {
+            renderedCountdowns.put(auction.getId(), new RenderedCountdown(
+                    SignFormatter.getAuctionTimeLine(auction), auction.getTimeRemainingChangesAt()));
+        }
+    }
+
+    /**
+     * Bring auction sign countdowns up to date. Only signs whose countdown text changed since it
+     * was last written are touched, signs in unloaded chunks are left for a later pass (they are
+     * never loaded for this), and signs near online players are written first. At most the
+     * configured number of signs is written per pass; the rest wait for the next one.
+     */
+    public void refreshAuctionSigns(Collection<AuctionData> auctions) {
+        long now = System.currentTimeMillis();
+        Map<UUID, List<Player>> playersByWorld = null;
+        List<AuctionData> near = new ArrayList<>();
+        List<AuctionData> far = new ArrayList<>();
+
+        for (AuctionData auction : auctions) {
+            if (isCountdownCurrent(auction, now)) {
+                continue;
+            }
+
+            Location location = auction.getSignLocation();
+            World world = location.getWorld();
+            if (!isChunkLoaded(location)) {
+                continue; // Brought up to date when the chunk loads
+            }
+
+            if (playersByWorld == null) {
+                playersByWorld = new HashMap<>();
+                for (Player player : plugin.getServer().getOnlinePlayers()) {
+                    playersByWorld.computeIfAbsent(player.getWorld().getUID(), k -> new ArrayList<>()).add(player);
+                }
+            }
+            (isNearPlayer(location, playersByWorld.get(world.getUID())) ? near : far).add(auction);
+        }
+
+        int budget = Math.max(1, plugin.getConfigManager().getAuctionSignUpdatesPerRefresh());
+        for (AuctionData auction : near) {
+            if (budget-- <= 0) break;
+            updateAuctionSign(auction.getSignLocation(), auction);
+        }
+        for (AuctionData auction : far) {
+            if (budget-- <= 0) break;
+            updateAuctionSign(auction.getSignLocation(), auction);
+        }
+
+        // Forget auctions that have since ended or been cancelled
+        if (renderedCountdowns.size() > auctions.size()) {
+            Set<String> activeIds = new HashSet<>();
+            for (AuctionData auction : auctions) {
+                activeIds.add(auction.getId());
+            }
+            renderedCountdowns.keySet().retainAll(activeIds);
+        }
+    }
+
+    /**
+     * Whether an auction's sign still shows the countdown it should.
+     */
+    private boolean isCountdownCurrent(AuctionData auction, long now) {
+        RenderedCountdown rendered = renderedCountdowns.get(auction.getId());
+        if (rendered == null) {
+            return false;
+        }
+        if (now < rendered.changesAt()) {
+            return true;
+        }
+        String line = SignFormatter.getAuctionTimeLine(auction);
+        if (line.equals(rendered.line())) {
+            renderedCountdowns.put(auction.getId(), new RenderedCountdown(line, auction.getTimeRemainingChangesAt()));
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Whether any of the players is within view distance (in chunks) of a location.
+     */
+    private boolean isNearPlayer(Location location, List<Player> players) {
+        if (players == null) {
+            return false;
+        }
+        int chunkX = location.getBlockX() >> 4;
+        int chunkZ = location.getBlockZ() >> 4;
+        int viewDistance = location.getWorld().getViewDistance();
+        for (Player player : players) {
+            Location at = player.getLocation();
+            if (Math.abs((at.getBlockX() >> 4) - chunkX) <= viewDistance
+                    && Math.abs((at.getBlockZ() >> 4) - chunkZ) <= viewDistance) {
+                return true;
+            }
+        }
+        return false;
     }
 
     /**
      * Remove a listing sign (break the sign block).
      */
     public void removeSign(Location signLocation) {
+        if (!isChunkLoaded(signLocation)) {
+            defer(signLocation, PendingSignOp.REMOVE);
+            return;
+        }
         Block block = signLocation.getBlock();
         if (block.getState() instanceof Sign) {
             block.breakNaturally();
         }
     }
 
+    // ==================== DEFERRED SIGN WRITES ====================
+
+    private static boolean isChunkLoaded(Location location) {
+        World world = location.getWorld();
+        return world != null && world.isChunkLoaded(location.getBlockX() >> 4, location.getBlockZ() >> 4);
+    }
+
+    /**
+     * Queue a sign write until its chunk loads. A later write to the same sign replaces it.
+     */
+    private void defer(Location signLocation, PendingSignOp op) {
+        World world = signLocation.getWorld();
+        if (world == null) {
+            return;
+        }
+        queue(world.getUID(), BlockPositions.pack(signLocation.getBlockX(), signLocation.getBlockY(), signLocation.getBlockZ()), op);
+        plugin.getPersistenceService().markDirty(this);
+    }
+
+    private void queue(UUID worldUUID, long position, PendingSignOp op) {
+        LongObjectMap<LongObjectMap<PendingSignOp>> chunks = pendingOps.computeIfAbsent(worldUUID, k -> new LongObjectMap<>());
+        long chunkKey = Chunk.getChunkKey(BlockPositions.unpackX(position) >> 4, BlockPositions.unpackZ(position) >> 4);
+        LongObjectMap<PendingSignOp> signs = chunks.get(chunkKey);
+        if (signs == null) {
+            signs = new LongObjectMap<>();
+            chunks.put(chunkKey, signs);
+        }
+        signs.put(position, op);
+    }
+
+    /**
+     * Whether a chunk has queued sign writes or auction signs that may show an old countdown.
+     * Cheap enough to ask on every chunk load.
+     */
+    public boolean hasSignWork(World world, long chunkKey) {
+        LongObjectMap<LongObjectMap<PendingSignOp>> chunks = pendingOps.get(world.getUID());
+        return (chunks != null && chunks.containsKey(chunkKey))
+                || plugin.getMarketDataManager().hasAuctionsInChunk(world, chunkKey);
+    }
+
+    /**
+     * Apply the queued writes for a chunk that has just loaded, and bring the countdown of any
+     * auction sign in it up to date.
+     */
+    public void onChunkLoaded(Chunk chunk) {
+        World world = chunk.getWorld();
+        long chunkKey = chunk.getChunkKey();
+
+        LongObjectMap<LongObjectMap<PendingSignOp>> chunks = pendingOps.get(world.getUID());
+        LongObjectMap<PendingSignOp> signs = chunks != null ? chunks.remove(chunkKey) : null;
+        if (signs != null) {
+            if (chunks.isEmpty()) {
+                pendingOps.remove(world.getUID());
+            }
+            plugin.getPersistenceService().markDirty(this);
+            signs.forEach((position, op) -> apply(new Location(world, BlockPositions.unpackX(position),
+                    BlockPositions.unpackY(position), BlockPositions.unpackZ(position)), op));
+        }
+
+        long now = System.currentTimeMillis();
+        for (AuctionData auction : plugin.getMarketDataManager().getAuctionsInChunk(world, chunkKey)) {
+            if (!auction.isEnded() && !isCountdownCurrent(auction, now)) {
+                updateAuctionSign(auction.getSignLocation(), auction);
+            }
+        }
+    }
+
+    /**
+     * Read the writes still queued at the last shutdown, and apply those whose chunk is
+     * already loaded, since no load event will come for it.
+     */
+    public void loadPendingSignOps() {
+        if (!pendingFile.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(pendingFile)))) {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                UUID worldUUID = new UUID(in.readLong(), in.readLong());
+                long position = in.readLong();
+                queue(worldUUID, position, in.readBoolean() ? PendingSignOp.REMOVE : PendingSignOp.UPDATE);
+            }
+        } catch (IOException e) {
+            plugin.getLogger().severe("Could not read pending-signs.dat: " + e.getMessage());
+        }
+
+        List<Chunk> loaded = new ArrayList<>();
+        for (World world : plugin.getServer().getWorlds()) {
+            LongObjectMap<LongObjectMap<PendingSignOp>> chunks = pendingOps.get(world.getUID());
+            if (chunks == null) {
+                continue;
+            }
+            chunks.forEach((chunkKey, signs) -> {
+                // Chunk keys hold x in the low and z in the high 32 bits
+                int chunkX = (int) chunkKey;
+                int chunkZ = (int) (chunkKey >> 32);
+                if (world.isChunkLoaded(chunkX, chunkZ)) {
+                    loaded.add(world.getChunkAt(chunkX, chunkZ));
+                }
+            });
+        }
+        loaded.forEach(this::onChunkLoaded);
+    }
+
+    @Override
+    public String getStoreName() {
+        return "pending-signs.dat";
+    }
+
+    @Override
+    public List<QueuedSignOp> snapshot() {
+        List<QueuedSignOp> queued = new ArrayList<>();
+        for (Map.Entry<UUID, LongObjectMap<LongObjectMap<PendingSignOp>>> entry : pendingOps.entrySet()) {
+            entry.getValue().forEach((chunkKey, signs) -> signs.forEach((position, op) ->
+                    queued.add(new QueuedSignOp(entry.getKey(), position, op))));
+        }
+        return queued;
+    }
+
+    @Override
+    public void write(List<QueuedSignOp> snapshot) throws IOException {
+        if (snapshot.isEmpty()) {
+            Files.deleteIfExists(pendingFile.toPath());
+            return;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4 + snapshot.size() * 25);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(snapshot.size());
+        for (QueuedSignOp queued : snapshot) {
+            out.writeLong(queued.worldUUID().getMostSignificantBits());
+            out.writeLong(queued.worldUUID().getLeastSignificantBits());
+            out.writeLong(queued.position());
+            out.writeBoolean(queued.op() == PendingSignOp.REMOVE);
+        }
+        AtomicFiles.write(pendingFile, bytes.toByteArray());
+    }
+
+    /**
+     * Carry out a queued write against the listing now at the sign, if any.
+     */
+    private void apply(Location signLocation, PendingSignOp op) {
+        MarketDataManager data = plugin.getMarketDataManager();
+        SaleData sale = data.getSaleBySign(signLocation);
+        AuctionData auction = data.getAuctionBySign(signLocation);
+
+        if (op == PendingSignOp.REMOVE) {
+            // A listing placed here since then owns the sign now
+            if (sale == null && (auction == null || auction.isEnded())) {
+                removeSign(signLocation);
+            }
+        } else if (sale != null) {
+            updateSaleSign(signLocation, sale);
+        } else if (auction != null && !auction.isEnded()) {
+            updateAuctionSign(signLocation, auction);
+        }
+    }
+
     /**
      * Get plain text lines from a sign.
      */
@@ -203,6 +531,24 @@ public class SignManager {
         return lines;
     }
 
+    /**
+     * @param line      the countdown line as written to the sign
+     * @param changesAt when that line is next due to change (epoch millis)
+     */
+    private record RenderedCountdown(String line, long changesAt) {
+    }
+
+    enum PendingSignOp {
+        UPDATE,
+        REMOVE
+    }
+
+    /**
+     * One queued write, as saved to pending-signs.dat.
+     */
+    record QueuedSignOp(UUID worldUUID, long position, PendingSignOp op) {
+    }
+
     // ==================== INPUT CLASSES ====================
 
     public static class SaleSignInput {
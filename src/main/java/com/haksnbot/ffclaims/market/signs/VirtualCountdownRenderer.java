@@ -0,0 +1,150 @@
+package com.haksnbot.ffclaims.market.signs;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.market.data.AuctionData;
+import com.haksnbot.ffclaims.market.data.BidData;
+import io.papermc.paper.event.packet.PlayerChunkLoadEvent;
+import net.kyori.adventure.text.Component;
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerChangedWorldEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Shows auction countdowns as client-side sign text, so the sign blocks themselves keep static
+ * text and are never rewritten while an auction runs. Once a second, each player within view
+ * distance of an auction sign is sent that sign's current lines, including their own bid, but
+ * only when those differ from what the player was last sent, nearest signs first and at most
+ * the configured number of signs per player per run. Main thread only.
+ */
+public class VirtualCountdownRenderer extends BukkitRunnable implements Listener {
+
+    private final FFClaimsPlugin plugin;
+
+    // Per player: the lines last sent for each auction sign in range, by auction ID
+    private final Map<UUID, Map<String, String>> shown = new HashMap<>();
+
+    public VirtualCountdownRenderer(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run() {
+        // Running auctions with loaded signs, by world
+        Map<UUID, List<AuctionData>> byWorld = new HashMap<>();
+        for (AuctionData auction : plugin.getMarketDataManager().getActiveAuctions()) {
+            Location sign = auction.getSignLocation();
+            World world = sign.getWorld();
+            if (world != null && world.isChunkLoaded(sign.getBlockX() >> 4, sign.getBlockZ() >> 4)) {
+                byWorld.computeIfAbsent(world.getUID(), k -> new ArrayList<>()).add(auction);
+            }
+        }
+
+        int budget = Math.max(1, plugin.getConfigManager().getVirtualCountdownUpdatesPerPlayer());
+        for (Player player : plugin.getServer().getOnlinePlayers()) {
+            List<AuctionData> auctions = byWorld.get(player.getWorld().getUID());
+            if (auctions == null) {
+                shown.remove(player.getUniqueId());
+                continue;
+            }
+            render(player, auctions, budget);
+        }
+    }
+
+    private void render(Player player, List<AuctionData> auctions, int budget) {
+        Location at = player.getLocation();
+        int chunkX = at.getBlockX() >> 4;
+        int chunkZ = at.getBlockZ() >> 4;
+        int viewDistance = Math.min(player.getViewDistance(), player.getWorld().getViewDistance());
+
+        Map<String, String> sent = shown.computeIfAbsent(player.getUniqueId(), k -> new HashMap<>());
+        Set<String> inRange = new HashSet<>();
+        List<Pending> changed = new ArrayList<>();
+
+        for (AuctionData auction : auctions) {
+            Location sign = auction.getSignLocation();
+            if (Math.abs((sign.getBlockX() >> 4) - chunkX) > viewDistance
+                    || Math.abs((sign.getBlockZ() >> 4) - chunkZ) > viewDistance) {
+                continue;
+            }
+            inRange.add(auction.getId());
+
+            // Only the countdown and the player's own bid differ between sends
+            BidData bid = auction.getBidByPlayer(player.getUniqueId());
+            String key = bid != null
+                    ? SignFormatter.getAuctionTimeLine(auction) + '\n' + bid.getAmount()
+                    : SignFormatter.getAuctionTimeLine(auction);
+            if (!key.equals(sent.get(auction.getId()))) {
+                changed.add(new Pending(auction, bid, key, sign.distanceSquared(at)));
+            }
+        }
+
+        // Signs out of range are reset by the client when their chunk is sent again
+        sent.keySet().retainAll(inRange);
+
+        changed.sort(Comparator.comparingDouble(Pending::distanceSquared));
+        for (int i = 0; i < changed.size() && i < budget; i++) {
+            Pending pending = changed.get(i);
+            Component[] lines = SignFormatter.getAuctionSignLines(pending.auction(), pending.bid());
+            player.sendSignChange(pending.auction().getSignLocation(), Arrays.asList(lines));
+            sent.put(pending.auction().getId(), pending.key());
+        }
+    }
+
+    /**
+     * Resend an auction's sign to everyone, after its block was rewritten.
+     */
+    public void forget(String auctionId) {
+        for (Map<String, String> sent : shown.values()) {
+            sent.remove(auctionId);
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChunkLoad(PlayerChunkLoadEvent event) {
+        // The chunk carries the real sign text, replacing whatever was sent before
+        Map<String, String> sent = shown.get(event.getPlayer().getUniqueId());
+        if (sent == null || sent.isEmpty()) {
+            return;
+        }
+        for (AuctionData auction : plugin.getMarketDataManager().getAuctionsInChunk(
+                event.getWorld(), event.getChunk().getChunkKey())) {
+            sent.remove(auction.getId());
+        }
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        shown.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerChangedWorld(PlayerChangedWorldEvent event) {
+        shown.remove(event.getPlayer().getUniqueId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent event) {
+        // Chunks around the destination may be sent afresh
+        shown.remove(event.getPlayer().getUniqueId());
+    }
+
+    private record Pending(AuctionData auction, BidData bid, String key, double distanceSquared) {
+    }
+}
@@ -2,14 +2,19 @@ package com.haksnbot.ffclaims.market.tasks;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
 import com.haksnbot.ffclaims.market.data.AuctionData;
+import com.haksnbot.ffclaims.market.data.MarketDataManager;
 import org.bukkit.scheduler.BukkitRunnable;
 
-import java.util.List;
-
+/**
+ * Settles auctions as they end. Runs every tick, but only checks the head of the
+ * expiry queue unless an auction is due.
+ */
 public class AuctionExpirationTask extends BukkitRunnable {
 
+    // Wait before retrying an auction whose settlement failed (e.g. a payment error)
+    private static final long RETRY_DELAY_MS = 30_000;
+
     private final FFClaimsPlugin plugin;
-    private int signUpdateCounter = 0;
 
     public AuctionExpirationTask(FFClaimsPlugin plugin) {
         this.plugin = plugin;
@@ -17,23 +22,24 @@ public class AuctionExpirationTask extends BukkitRunnable {
 
     @Override
     public void run() {
-        // Process expired auctions
-        List<AuctionData> expiredAuctions = plugin.getMarketDataManager().getExpiredAuctions();
+        MarketDataManager dataManager = plugin.getMarketDataManager();
+        long now = System.currentTimeMillis();
+        if (!dataManager.hasDueAuctions(now)) {
+            return;
+        }
 
-        for (AuctionData auction : expiredAuctions) {
+        for (AuctionData auction : dataManager.pollDueAuctions(now)) {
             try {
                 plugin.getAuctionManager().processExpiredAuction(auction);
             } catch (Exception e) {
                 plugin.getLogger().severe("Error processing expired auction " + auction.getId() + ": " + e.getMessage());
                 e.printStackTrace();
             }
-        }
 
-        // Update auction signs every 2 runs (~1 minute if interval is 30s)
-        signUpdateCounter++;
-        if (signUpdateCounter >= 2) {
-            signUpdateCounter = 0;
-            plugin.getAuctionManager().updateAuctionSigns();
+            // Still listed means settlement did not go through; try again later
+            if (!auction.isEnded() && dataManager.getAuction(auction.getId()) == auction) {
+                dataManager.scheduleExpiration(auction, now + RETRY_DELAY_MS);
+            }
         }
     }
 }
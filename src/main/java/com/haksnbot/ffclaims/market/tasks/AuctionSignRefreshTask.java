@@ -0,0 +1,21 @@
+package com.haksnbot.ffclaims.market.tasks;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Refreshes the time remaining shown on auction signs.
+ */
+public class AuctionSignRefreshTask extends BukkitRunnable {
+
+    private final FFClaimsPlugin plugin;
+
+    public AuctionSignRefreshTask(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run() {
+        plugin.getAuctionManager().updateAuctionSigns();
+    }
+}
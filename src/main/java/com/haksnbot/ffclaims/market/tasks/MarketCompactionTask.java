@@ -0,0 +1,21 @@
+package com.haksnbot.ffclaims.market.tasks;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import org.bukkit.scheduler.BukkitRunnable;
+
+/**
+ * Periodically folds the market journal into the YAML snapshots.
+ */
+public class MarketCompactionTask extends BukkitRunnable {
+
+    private final FFClaimsPlugin plugin;
+
+    public MarketCompactionTask(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public void run() {
+        plugin.getMarketDataManager().compact();
+    }
+}
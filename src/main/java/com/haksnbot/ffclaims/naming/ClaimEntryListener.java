@@ -1,10 +1,11 @@
 package com.haksnbot.ffclaims.naming;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.hooks.ClaimLookupCache;
+import com.haksnbot.ffclaims.naming.ClaimNameRenderCache.RenderedName;
 import me.ryanhamshire.GriefPrevention.Claim;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import net.kyori.adventure.title.Title;
+import org.bukkit.Location;
+import org.bukkit.World;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -12,16 +13,18 @@ import org.bukkit.event.Listener;
 import org.bukkit.event.player.PlayerMoveEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
-import java.time.Duration;
-import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ClaimEntryListener implements Listener {
 
+    // How far around a wilderness player to look for claims when sizing their free region
+    private static final int WILDERNESS_CHUNK_RADIUS = 1;
+
     private final FFClaimsPlugin plugin;
-    // Tracks the last claim ID each player was in (0 = wilderness)
-    private final Map<UUID, Long> lastClaimId = new HashMap<>();
+    // Claim each player was last in, and the region they can move in without changing claim
+    private final Map<UUID, TrackState> tracking = new ConcurrentHashMap<>();
 
     public ClaimEntryListener(FFClaimsPlugin plugin) {
         this.plugin = plugin;
@@ -37,41 +40,88 @@ public class ClaimEntryListener implements Listener {
         }
 
         Player player = event.getPlayer();
-        Claim claim = plugin.getGriefPreventionHook().getClaimAt(event.getTo(), false);
-        long currentClaimId = claim != null ? claim.getID() : 0L;
+        Location to = event.getTo();
+        World world = to.getWorld();
+        int x = to.getBlockX();
+        int y = to.getBlockY();
+        int z = to.getBlockZ();
+        ClaimLookupCache cache = plugin.getClaimLookupCache();
 
-        Long previous = lastClaimId.put(player.getUniqueId(), currentClaimId);
-        if (previous == null) previous = 0L;
+        TrackState state = tracking.computeIfAbsent(player.getUniqueId(), k -> new TrackState());
+        if (state.contains(world, x, y, z, cache.getGeneration())) {
+            return;
+        }
+
+        Claim claim = cache.getClaimAt(to, false);
+        long currentClaimId = claim != null ? claim.getID() : 0L;
+        long previous = state.claimId;
+        track(state, cache, claim, world, x, y, z);
+        state.claimId = currentClaimId;
 
         // Only fire on claim change
         if (currentClaimId == previous) return;
 
         // If entering a named claim, show title
         if (currentClaimId != 0L) {
-            String name = plugin.getNamingDataManager().getClaimName(currentClaimId);
+            RenderedName name = plugin.getNamingDataManager().getRenderedName(currentClaimId);
             if (name != null) {
-                Component subtitle = LegacyComponentSerializer.legacyAmpersand().deserialize(name);
-
-                int fadeIn = plugin.getConfigManager().getDisplayFadeIn();
-                int stay = plugin.getConfigManager().getDisplayStay();
-                int fadeOut = plugin.getConfigManager().getDisplayFadeOut();
-
-                Title title = Title.title(
-                        Component.empty(),
-                        subtitle,
-                        Title.Times.times(
-                                Duration.ofMillis(fadeIn * 50L),
-                                Duration.ofMillis(stay * 50L),
-                                Duration.ofMillis(fadeOut * 50L)
-                        )
-                );
-                player.showTitle(title);
+                player.showTitle(name.title());
+            }
+        }
+    }
+
+    /**
+     * Work out the region around a player in which the claim lookup would give the same answer:
+     * the claim's box inside a claim without subdivisions, or a square clear of all claims
+     * in the wilderness. Anywhere else the region is just the current block.
+     */
+    private void track(TrackState state, ClaimLookupCache cache, Claim claim, World world, int x, int y, int z) {
+        state.world = world;
+        state.generation = cache.getGeneration();
+
+        if (claim == null) {
+            int radius = cache.distanceToNearestClaim(world, x, z, WILDERNESS_CHUNK_RADIUS) - 1;
+            if (radius >= 0) {
+                state.setRegion(x - radius, Integer.MIN_VALUE, z - radius, x + radius, Integer.MAX_VALUE, z + radius);
+                return;
             }
+        } else if (claim.parent == null && (claim.children == null || claim.children.isEmpty())) {
+            Location lesser = claim.getLesserBoundaryCorner();
+            Location greater = claim.getGreaterBoundaryCorner();
+            state.setRegion(lesser.getBlockX(), lesser.getBlockY(), lesser.getBlockZ(),
+                    greater.getBlockX(), world.getMaxHeight(), greater.getBlockZ());
+            return;
         }
+        state.setRegion(x, y, z, x, y, z);
     }
 
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
-        lastClaimId.remove(event.getPlayer().getUniqueId());
+        tracking.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Per-player claim tracking, updated in place on the player's own move events.
+     */
+    private static final class TrackState {
+        // 0 = wilderness
+        long claimId;
+        World world;
+        int generation;
+        int minX, minY, minZ, maxX, maxY, maxZ;
+
+        boolean contains(World world, int x, int y, int z, int generation) {
+            return this.world == world && this.generation == generation
+                    && x >= minX && x <= maxX && z >= minZ && z <= maxZ && y >= minY && y <= maxY;
+        }
+
+        void setRegion(int minX, int minY, int minZ, int maxX, int maxY, int maxZ) {
+            this.minX = minX;
+            this.minY = minY;
+            this.minZ = minZ;
+            this.maxX = maxX;
+            this.maxY = maxY;
+            this.maxZ = maxZ;
+        }
     }
 }
@@ -0,0 +1,128 @@
+package com.haksnbot.ffclaims.naming;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.util.PlayerNameCache;
+import me.ryanhamshire.GriefPrevention.Claim;
+import me.ryanhamshire.GriefPrevention.PlayerData;
+import org.bukkit.Bukkit;
+import org.bukkit.scheduler.BukkitRunnable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Claim block rankings for /claimtop, rebuilt periodically instead of per command.
+ * Each run snapshots claim areas and claim blocks on the main thread, then resolves names and
+ * sorts off the main thread and publishes an immutable {@link Ranking}. Reading a page or a
+ * player's rank is then O(page size) / O(1) from any thread.
+ */
+public class ClaimLeaderboard extends BukkitRunnable {
+
+    private final FFClaimsPlugin plugin;
+    private volatile Ranking ranking = Ranking.EMPTY;
+
+    public ClaimLeaderboard(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * The latest published ranking.
+     */
+    public Ranking getRanking() {
+        return ranking;
+    }
+
+    @Override
+    public void run() {
+        // Collect claim blocks used per player
+        Map<UUID, Long> usedBlocks = new HashMap<>();
+        for (Claim claim : plugin.getGriefPreventionHook().getAllClaims()) {
+            UUID owner = claim.getOwnerID();
+            if (owner == null) continue; // Skip admin claims
+
+            usedBlocks.merge(owner, (long) claim.getArea(), Long::sum);
+        }
+
+        // Player data needs the main thread; names and sorting do not
+        int size = usedBlocks.size();
+        UUID[] owners = new UUID[size];
+        long[] used = new long[size];
+        long[] remaining = new long[size];
+        int i = 0;
+        for (Map.Entry<UUID, Long> owner : usedBlocks.entrySet()) {
+            PlayerData playerData = plugin.getGriefPreventionHook().getPlayerData(owner.getKey());
+            owners[i] = owner.getKey();
+            used[i] = owner.getValue();
+            remaining[i] = playerData != null ? playerData.getRemainingClaimBlocks() : 0;
+            i++;
+        }
+
+        PlayerNameCache names = plugin.getPlayerNameCache();
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            List<Entry> entries = new ArrayList<>(size);
+            for (int j = 0; j < size; j++) {
+                String name = names.lookupName(owners[j]);
+                if (name == null) name = owners[j].toString().substring(0, 8);
+                entries.add(new Entry(owners[j], name, used[j], remaining[j], used[j] + remaining[j]));
+            }
+            ranking = Ranking.of(entries);
+        });
+    }
+
+    /**
+     * One player's line in the rankings.
+     */
+    public record Entry(UUID uuid, String name, long used, long remaining, long total) {
+    }
+
+    /**
+     * Immutable rankings, highest total first.
+     */
+    public static final class Ranking {
+
+        static final Ranking EMPTY = new Ranking(new Entry[0], Map.of());
+
+        private final Entry[] entries;
+        private final Map<UUID, Integer> ranks;
+
+        private Ranking(Entry[] entries, Map<UUID, Integer> ranks) {
+            this.entries = entries;
+            this.ranks = ranks;
+        }
+
+        static Ranking of(List<Entry> unsorted) {
+            Entry[] entries = unsorted.toArray(new Entry[0]);
+            Arrays.sort(entries, Comparator.comparingLong(Entry::total).reversed());
+
+            Map<UUID, Integer> ranks = new HashMap<>(entries.length * 2);
+            for (int i = 0; i < entries.length; i++) {
+                ranks.put(entries[i].uuid(), i + 1);
+            }
+            return new Ranking(entries, ranks);
+        }
+
+        public int size() {
+            return entries.length;
+        }
+
+        /**
+         * Entry at a 1-based rank.
+         */
+        public Entry get(int rank) {
+            return entries[rank - 1];
+        }
+
+        /**
+         * A player's 1-based rank, or 0 if they have no claims.
+         */
+        public int rankOf(UUID uuid) {
+            Integer rank = ranks.get(uuid);
+            return rank != null ? rank : 0;
+        }
+    }
+}
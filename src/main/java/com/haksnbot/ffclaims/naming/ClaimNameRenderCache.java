@@ -0,0 +1,89 @@
+package com.haksnbot.ffclaims.naming;
+
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.config.ConfigManager;
+import com.haksnbot.ffclaims.util.LongObjectMap;
+import net.kyori.adventure.text.Component;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
+import net.kyori.adventure.title.Title;
+import org.bukkit.ChatColor;
+
+import java.time.Duration;
+import java.util.regex.Pattern;
+
+/**
+ * Claim names rendered once for display: the chat component, the section-sign colored string,
+ * the plain Dynmap label and the entry title built with the configured timings.
+ * Entries are dropped when a name changes and cleared when names or config are reloaded.
+ * Main thread only.
+ */
+public class ClaimNameRenderCache {
+
+    private static final Pattern COLOR_CODES = Pattern.compile("&[0-9a-fk-or]");
+
+    // Cached for claims without a name, so those are a single probe too
+    private static final RenderedName UNNAMED = new RenderedName(null, null, null, null, null);
+
+    private final FFClaimsPlugin plugin;
+    private final LongObjectMap<RenderedName> rendered = new LongObjectMap<>();
+
+    public ClaimNameRenderCache(FFClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    /**
+     * Rendered form of a claim's name, or null if it has none.
+     */
+    public RenderedName get(long claimId, ClaimNameTable names) {
+        RenderedName cached = rendered.get(claimId);
+        if (cached == null) {
+            String name = names.get(claimId);
+            cached = name != null ? render(name) : UNNAMED;
+            rendered.put(claimId, cached);
+        }
+        return cached == UNNAMED ? null : cached;
+    }
+
+    private RenderedName render(String name) {
+        Component component = LegacyComponentSerializer.legacyAmpersand().deserialize(name);
+
+        ConfigManager config = plugin.getConfigManager();
+        Title title = Title.title(
+                Component.empty(),
+                component,
+                Title.Times.times(
+                        Duration.ofMillis(config.getDisplayFadeIn() * 50L),
+                        Duration.ofMillis(config.getDisplayStay() * 50L),
+                        Duration.ofMillis(config.getDisplayFadeOut() * 50L)
+                )
+        );
+
+        return new RenderedName(name, ChatColor.translateAlternateColorCodes('&', name),
+                toLabel(name), component, title);
+    }
+
+    /**
+     * Strip & color codes for plain-text labels such as Dynmap markers.
+     */
+    public static String toLabel(String name) {
+        return COLOR_CODES.matcher(name).replaceAll("");
+    }
+
+    public void invalidate(long claimId) {
+        rendered.remove(claimId);
+    }
+
+    public void clear() {
+        rendered.clear();
+    }
+
+    /**
+     * @param raw       the stored name with & codes
+     * @param colored   the name with section-sign color codes, for legacy chat messages
+     * @param label     the name without color codes
+     * @param component the name as a chat component
+     * @param title     the claim entry title (name as subtitle)
+     */
+    public record RenderedName(String raw, String colored, String label, Component component, Title title) {
+    }
+}
@@ -0,0 +1,175 @@
+package com.haksnbot.ffclaims.naming;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Immutable table of claim names: a {@link NameSnapshot} base (the bytes of
+ * naming-data.bin) plus a small sorted overlay of edits not yet saved.
+ * Lookups are binary searches over primitive arrays, and a table can be shared freely
+ * between threads. Edits produce a new table that copies only the overlay.
+ */
+public final class ClaimNameTable {
+
+    public static final ClaimNameTable EMPTY = new ClaimNameTable(NameSnapshot.EMPTY, new long[0], new String[0], 0);
+
+    private final NameSnapshot base;
+    // Sorted claim IDs edited since the base was loaded or saved; a null name removes the base entry
+    private final long[] overlayIds;
+    private final String[] overlayNames;
+    private final int size;
+
+    private ClaimNameTable(NameSnapshot base, long[] overlayIds, String[] overlayNames, int size) {
+        this.base = base;
+        this.overlayIds = overlayIds;
+        this.overlayNames = overlayNames;
+        this.size = size;
+    }
+
+    static ClaimNameTable of(NameSnapshot base) {
+        return new ClaimNameTable(base, new long[0], new String[0], base.size());
+    }
+
+    /**
+     * Build a table from unsorted parallel arrays. Later duplicates win.
+     */
+    public static ClaimNameTable of(long[] ids, String[] names, int size) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        // Stable sort keeps input order among duplicates, so the last one can win below
+        Arrays.sort(order, (a, b) -> Long.compare(ids[a], ids[b]));
+
+        long[] sortedIds = new long[size];
+        String[] sortedNames = new String[size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            int index = order[i];
+            if (count > 0 && sortedIds[count - 1] == ids[index]) {
+                sortedNames[count - 1] = names[index];
+            } else {
+                sortedIds[count] = ids[index];
+                sortedNames[count] = names[index];
+                count++;
+            }
+        }
+
+        try {
+            return of(NameSnapshot.wrap(ByteBuffer.wrap(NameSnapshot.encode(sortedIds, sortedNames, count))));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String get(long claimId) {
+        int index = Arrays.binarySearch(overlayIds, claimId);
+        if (index >= 0) {
+            return overlayNames[index];
+        }
+        int baseIndex = base.indexOf(claimId);
+        return baseIndex >= 0 ? base.nameAt(baseIndex) : null;
+    }
+
+    /**
+     * Copy of this table with one name set (or removed if name is null).
+     */
+    public ClaimNameTable with(long claimId, String name) {
+        boolean wasPresent = get(claimId) != null;
+        int newSize = size + (name != null ? 1 : 0) - (wasPresent ? 1 : 0);
+
+        int index = Arrays.binarySearch(overlayIds, claimId);
+        if (index >= 0) {
+            String[] newNames = overlayNames.clone();
+            newNames[index] = name;
+            return new ClaimNameTable(base, overlayIds, newNames, newSize);
+        }
+
+        int insert = -index - 1;
+        long[] newIds = new long[overlayIds.length + 1];
+        String[] newNames = new String[overlayNames.length + 1];
+        System.arraycopy(overlayIds, 0, newIds, 0, insert);
+        System.arraycopy(overlayNames, 0, newNames, 0, insert);
+        newIds[insert] = claimId;
+        newNames[insert] = name;
+        System.arraycopy(overlayIds, insert, newIds, insert + 1, overlayIds.length - insert);
+        System.arraycopy(overlayNames, insert, newNames, insert + 1, overlayNames.length - insert);
+        return new ClaimNameTable(base, newIds, newNames, newSize);
+    }
+
+    /**
+     * This table on top of a newly written snapshot of {@code written}, keeping in the overlay
+     * only the edits made since {@code written} was taken. Used after a save, so the overlay
+     * does not keep growing between reloads. Returns this table unchanged if it does not
+     * descend from {@code written} (its names were replaced by an import meanwhile).
+     */
+    ClaimNameTable rebase(ClaimNameTable written, NameSnapshot writtenBase) {
+        if (base != written.base) {
+            return this;
+        }
+
+        long[] ids = new long[overlayIds.length];
+        String[] names = new String[overlayIds.length];
+        int count = 0;
+        for (int i = 0; i < overlayIds.length; i++) {
+            int index = Arrays.binarySearch(written.overlayIds, overlayIds[i]);
+            boolean saved = index >= 0 && Objects.equals(written.overlayNames[index], overlayNames[i]);
+            if (!saved) {
+                ids[count] = overlayIds[i];
+                names[count] = overlayNames[i];
+                count++;
+            }
+        }
+        return new ClaimNameTable(writtenBase, Arrays.copyOf(ids, count), Arrays.copyOf(names, count), size);
+    }
+
+    /**
+     * Visit every entry in claim ID order, merging the overlay into the base.
+     */
+    public void forEach(EntryConsumer consumer) {
+        int b = 0;
+        int o = 0;
+        int baseSize = base.size();
+        while (b < baseSize || o < overlayIds.length) {
+            long baseId = b < baseSize ? base.idAt(b) : Long.MAX_VALUE;
+            if (o < overlayIds.length && (b >= baseSize || overlayIds[o] <= baseId)) {
+                if (overlayNames[o] != null) {
+                    consumer.accept(overlayIds[o], overlayNames[o]);
+                }
+                if (overlayIds[o] == baseId) {
+                    b++;
+                }
+                o++;
+            } else {
+                consumer.accept(baseId, base.nameAt(b));
+                b++;
+            }
+        }
+    }
+
+    /**
+     * Encode the merged table in the naming-data.bin format.
+     */
+    byte[] encode() {
+        long[] ids = new long[size];
+        String[] names = new String[size];
+        int[] count = {0};
+        forEach((claimId, name) -> {
+            ids[count[0]] = claimId;
+            names[count[0]] = name;
+            count[0]++;
+        });
+        return NameSnapshot.encode(ids, names, count[0]);
+    }
+
+    @FunctionalInterface
+    public interface EntryConsumer {
+        void accept(long claimId, String name);
+    }
+}
@@ -1,17 +1,12 @@
 package com.haksnbot.ffclaims.naming;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
-import me.ryanhamshire.GriefPrevention.Claim;
-import me.ryanhamshire.GriefPrevention.DataStore;
-import me.ryanhamshire.GriefPrevention.GriefPrevention;
-import me.ryanhamshire.GriefPrevention.PlayerData;
-import org.bukkit.Bukkit;
-import org.bukkit.OfflinePlayer;
+import com.haksnbot.ffclaims.naming.ClaimLeaderboard.Entry;
+import com.haksnbot.ffclaims.naming.ClaimLeaderboard.Ranking;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
-
-import java.util.*;
+import org.bukkit.entity.Player;
 
 public class ClaimTopCommand implements CommandExecutor {
 
@@ -24,6 +19,13 @@ public class ClaimTopCommand implements CommandExecutor {
 
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
+        Ranking ranking = plugin.getClaimLeaderboard().getRanking();
+
+        if (args.length > 0 && args[0].equalsIgnoreCase("me")) {
+            showOwnRank(sender, ranking);
+            return true;
+        }
+
         int page = 1;
         if (args.length > 0) {
             try {
@@ -35,64 +37,25 @@ public class ClaimTopCommand implements CommandExecutor {
             }
         }
 
-        DataStore dataStore = GriefPrevention.instance.dataStore;
-
-        // Collect claim blocks used per player
-        Map<UUID, Long> usedBlocks = new HashMap<>();
-        for (Claim claim : dataStore.getClaims()) {
-            UUID owner = claim.getOwnerID();
-            if (owner == null) continue; // Skip admin claims
-
-            long area = claim.getArea();
-            usedBlocks.merge(owner, area, Long::sum);
-        }
-
-        // Build entries with total blocks
-        List<ClaimTopEntry> entries = new ArrayList<>();
-        Set<UUID> processedPlayers = new HashSet<>(usedBlocks.keySet());
-
-        for (UUID uuid : processedPlayers) {
-            PlayerData playerData = dataStore.getPlayerData(uuid);
-            long used = usedBlocks.getOrDefault(uuid, 0L);
-            int remaining = playerData.getRemainingClaimBlocks();
-            long total = used + remaining;
-
-            OfflinePlayer offlinePlayer = Bukkit.getOfflinePlayer(uuid);
-            String name = offlinePlayer.getName();
-            if (name == null) name = uuid.toString().substring(0, 8);
-
-            entries.add(new ClaimTopEntry(name, used, remaining, total));
-        }
-
-        // Sort by total descending
-        entries.sort((a, b) -> Long.compare(b.total, a.total));
-
-        int totalPages = Math.max(1, (entries.size() + PAGE_SIZE - 1) / PAGE_SIZE);
+        int totalPages = Math.max(1, (ranking.size() + PAGE_SIZE - 1) / PAGE_SIZE);
         if (page > totalPages) page = totalPages;
 
-        int startIndex = (page - 1) * PAGE_SIZE;
-        int endIndex = Math.min(startIndex + PAGE_SIZE, entries.size());
+        int firstRank = (page - 1) * PAGE_SIZE + 1;
+        int lastRank = Math.min(firstRank + PAGE_SIZE - 1, ranking.size());
 
         // Send header
         sender.sendMessage(plugin.getConfigManager().getMessage("naming.claimtop-header")
                 .replace("%page%", String.valueOf(page))
                 .replace("%total%", String.valueOf(totalPages)));
 
-        if (entries.isEmpty()) {
+        if (ranking.size() == 0) {
             sender.sendMessage(plugin.getConfigManager().getMessage("naming.claimtop-empty"));
             return true;
         }
 
         // Send entries
-        String entryFormat = plugin.getConfigManager().getMessage("naming.claimtop-entry");
-        for (int i = startIndex; i < endIndex; i++) {
-            ClaimTopEntry entry = entries.get(i);
-            sender.sendMessage(entryFormat
-                    .replace("%rank%", String.valueOf(i + 1))
-                    .replace("%player%", entry.name)
-                    .replace("%total%", formatNumber(entry.total))
-                    .replace("%used%", formatNumber(entry.used))
-                    .replace("%unused%", formatNumber(entry.remaining)));
+        for (int rank = firstRank; rank <= lastRank; rank++) {
+            sender.sendMessage(formatEntry(rank, ranking.get(rank)));
         }
 
         // Send footer if there are more pages
@@ -105,9 +68,30 @@ public class ClaimTopCommand implements CommandExecutor {
         return true;
     }
 
+    private void showOwnRank(CommandSender sender, Ranking ranking) {
+        if (!(sender instanceof Player player)) {
+            sender.sendMessage("This command can only be used by players.");
+            return;
+        }
+
+        int rank = ranking.rankOf(player.getUniqueId());
+        if (rank == 0) {
+            player.sendMessage(plugin.getConfigManager().getMessage("naming.claimtop-not-ranked"));
+            return;
+        }
+        player.sendMessage(formatEntry(rank, ranking.get(rank)));
+    }
+
+    private String formatEntry(int rank, Entry entry) {
+        return plugin.getConfigManager().getMessage("naming.claimtop-entry")
+                .replace("%rank%", String.valueOf(rank))
+                .replace("%player%", entry.name())
+                .replace("%total%", formatNumber(entry.total()))
+                .replace("%used%", formatNumber(entry.used()))
+                .replace("%unused%", formatNumber(entry.remaining()));
+    }
+
     private String formatNumber(long num) {
         return String.format("%,d", num);
     }
-
-    private record ClaimTopEntry(String name, long used, long remaining, long total) {}
 }
@@ -1,12 +1,12 @@
 package com.haksnbot.ffclaims.naming;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.naming.ClaimNameRenderCache.RenderedName;
 import me.ryanhamshire.GriefPrevention.Claim;
 import me.ryanhamshire.GriefPrevention.GriefPrevention;
 import me.ryanhamshire.GriefPrevention.PlayerData;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.format.NamedTextColor;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -39,31 +39,36 @@ public class ClaimsListListener implements Listener {
             targetName = parts[1];
         }
 
-        PlayerData playerData;
-        String ownerName;
-
         if (targetName != null) {
             // Admin viewing another player — check permission
             if (!player.hasPermission("griefprevention.claimslistother")) {
                 // Let GP handle the denial
                 return;
             }
-            @SuppressWarnings("deprecation")
-            org.bukkit.OfflinePlayer target = org.bukkit.Bukkit.getOfflinePlayer(targetName);
-            if (target.getUniqueId() == null) {
-                player.sendMessage(Component.text("Player not found.", NamedTextColor.RED));
-                event.setCancelled(true);
-                return;
-            }
-            playerData = GriefPrevention.instance.dataStore.getPlayerData(target.getUniqueId());
-            ownerName = target.getName() != null ? target.getName() : targetName;
-        } else {
-            playerData = GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId());
-            ownerName = player.getName();
+            event.setCancelled(true);
+
+            // Unknown names are looked up off the main thread
+            String name = targetName;
+            plugin.getPlayerNameCache().resolveUUID(name, targetUUID -> {
+                if (!player.isOnline()) {
+                    return;
+                }
+                if (targetUUID == null) {
+                    player.sendMessage(Component.text("Player not found.", NamedTextColor.RED));
+                    return;
+                }
+                String ownerName = plugin.getPlayerNameCache().getName(targetUUID);
+                showClaims(player, GriefPrevention.instance.dataStore.getPlayerData(targetUUID),
+                        ownerName != null ? ownerName : name);
+            });
+            return;
         }
 
         event.setCancelled(true);
+        showClaims(player, GriefPrevention.instance.dataStore.getPlayerData(player.getUniqueId()), player.getName());
+    }
 
+    private void showClaims(Player player, PlayerData playerData, String ownerName) {
         Vector<Claim> claims = playerData.getClaims();
 
         if (claims.isEmpty()) {
@@ -83,13 +88,12 @@ public class ClaimsListListener implements Listener {
             String coords = lesser.getWorld().getName()
                     + " (" + lesser.getBlockX() + ", " + lesser.getBlockY() + ", " + lesser.getBlockZ() + ")";
 
-            String claimName = plugin.getNamingDataManager().getClaimName(claim.getID());
+            RenderedName claimName = plugin.getNamingDataManager().getRenderedName(claim.getID());
 
             Component line;
             if (claimName != null) {
-                Component nameComponent = LegacyComponentSerializer.legacyAmpersand().deserialize(claimName);
                 line = Component.text(index + ". ", NamedTextColor.WHITE)
-                        .append(nameComponent)
+                        .append(claimName.component())
                         .append(Component.text(" — " + coords + " — " + area + " blocks", NamedTextColor.GRAY));
             } else {
                 line = Component.text(index + ". ", NamedTextColor.WHITE)
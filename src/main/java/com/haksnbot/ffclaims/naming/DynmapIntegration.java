@@ -1,19 +1,48 @@
 package com.haksnbot.ffclaims.naming;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.util.LongObjectMap;
 import me.ryanhamshire.GriefPrevention.Claim;
+import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.world.ChunkLoadEvent;
+import org.bukkit.scheduler.BukkitRunnable;
 import org.dynmap.DynmapAPI;
 import org.dynmap.markers.Marker;
 import org.dynmap.markers.MarkerAPI;
 import org.dynmap.markers.MarkerSet;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
 
-public class DynmapIntegration {
+/**
+ * Claim name markers on the Dynmap web map. Marker heights never load chunks: they come from
+ * chunks that are already loaded, are cached per claim, and otherwise use a fallback until
+ * the chunk is loaded by normal play.
+ */
+public class DynmapIntegration implements Listener {
+
+    private static final String MARKER_PREFIX = "claim_";
 
     private final FFClaimsPlugin plugin;
     private MarkerSet markerSet;
+    private MarkerSync sync;
+
+    // Surface height under each claim's marker column
+    private final LongObjectMap<MarkerHeight> heights = new LongObjectMap<>();
+    // Claims waiting for a height, by world and chunk key
+    private final Map<UUID, LongObjectMap<Set<Long>>> awaitingChunk = new HashMap<>();
+    // The chunk each waiting claim is listed under, so the entry can be dropped with its marker
+    private final LongObjectMap<ChunkRef> awaitedChunkOf = new LongObjectMap<>();
 
     public DynmapIntegration(FFClaimsPlugin plugin) {
         this.plugin = plugin;
@@ -37,35 +66,79 @@ public class DynmapIntegration {
         return true;
     }
 
+    /**
+     * Bring the marker set in line with the claim names, spread over ticks. Only markers that
+     * are missing, stale or changed are written; a refresh already in progress starts over.
+     */
     public void refreshAll() {
         if (markerSet == null) return;
 
-        // Clear existing markers
-        for (Marker m : markerSet.getMarkers()) {
-            m.deleteMarker();
+        if (sync != null) {
+            sync.cancel();
         }
+        sync = new MarkerSync(plugin.getNamingDataManager().getClaimNames());
+        sync.runTaskTimer(plugin, 1L, 1L);
+    }
 
-        // Add all named claims
-        for (Map.Entry<Long, String> entry : plugin.getNamingDataManager().getClaimNames().entrySet()) {
-            updateMarker(entry.getKey(), entry.getValue());
+    public void shutdown() {
+        if (sync != null) {
+            sync.cancel();
+            sync = null;
         }
     }
 
     public void updateMarker(long claimId, String name) {
         if (markerSet == null) return;
 
-        String markerId = "claim_" + claimId;
-
         if (name == null) {
-            Marker existing = markerSet.findMarker(markerId);
-            if (existing != null) existing.deleteMarker();
+            deleteMarker(claimId);
+            return;
+        }
+
+        syncMarker(claimId, label(claimId, name));
+    }
+
+    /**
+     * Marker label for a claim: the cached rendering, or rendered here if the cache misses.
+     */
+    private String label(long claimId, String name) {
+        ClaimNameRenderCache.RenderedName rendered = plugin.getNamingDataManager().getRenderedName(claimId);
+        return rendered != null ? rendered.label() : ClaimNameRenderCache.toLabel(name);
+    }
+
+    private void deleteMarker(long claimId) {
+        Marker existing = markerSet.findMarker(MARKER_PREFIX + claimId);
+        if (existing != null) existing.deleteMarker();
+        forget(claimId);
+    }
+
+    /**
+     * Drop the cached height and any chunk wait of a claim whose marker is gone.
+     */
+    private void forget(long claimId) {
+        heights.remove(claimId);
+        stopAwaiting(claimId);
+    }
+
+    private void stopAwaiting(long claimId) {
+        ChunkRef chunk = awaitedChunkOf.remove(claimId);
+        if (chunk == null) {
             return;
         }
+        LongObjectMap<Set<Long>> chunks = awaitingChunk.get(chunk.world());
+        Set<Long> claimIds = chunks != null ? chunks.get(chunk.key()) : null;
+        if (claimIds != null && claimIds.remove(claimId) && claimIds.isEmpty()) {
+            chunks.remove(chunk.key());
+        }
+    }
 
+    /**
+     * Create, move or relabel one claim's marker, writing only what differs.
+     */
+    private void syncMarker(long claimId, String label) {
         Claim claim = plugin.getGriefPreventionHook().getClaim(claimId);
         if (claim == null) {
-            Marker existing = markerSet.findMarker(markerId);
-            if (existing != null) existing.deleteMarker();
+            deleteMarker(claimId);
             return;
         }
 
@@ -76,18 +149,180 @@ public class DynmapIntegration {
 
         double cx = (lesser.getBlockX() + greater.getBlockX()) / 2.0;
         double cz = (lesser.getBlockZ() + greater.getBlockZ()) / 2.0;
-        double cy = lesser.getWorld().getHighestBlockYAt((int) cx, (int) cz);
         String world = lesser.getWorld().getName();
 
-        // Strip & color codes for the marker label
-        String label = name.replaceAll("&[0-9a-fk-or]", "");
-
+        String markerId = MARKER_PREFIX + claimId;
         Marker existing = markerSet.findMarker(markerId);
-        if (existing != null) {
-            existing.setLabel(label);
-            existing.setLocation(world, cx, cy, cz);
-        } else {
+        if (existing == null) {
+            double cy = markerY(claimId, lesser, (int) cx, (int) cz);
             markerSet.createMarker(markerId, label, world, cx, cy, cz, null, false);
+            return;
+        }
+
+        if (!label.equals(existing.getLabel())) {
+            existing.setLabel(label);
+        }
+        if (!world.equals(existing.getWorld()) || existing.getX() != cx || existing.getZ() != cz) {
+            existing.setLocation(world, cx, markerY(claimId, lesser, (int) cx, (int) cz), cz);
+            return;
+        }
+
+        // Same spot: only correct the height once a real one is known
+        MarkerHeight height = knownHeight(claimId, lesser.getWorld(), (int) cx, (int) cz);
+        if (height == null) {
+            awaitChunk(claimId, lesser.getWorld(), (int) cx, (int) cz);
+        } else if (existing.getY() != height.y()) {
+            existing.setLocation(world, cx, height.y(), cz);
+        }
+    }
+
+    /**
+     * Height for a claim's marker: the cached or loaded-chunk surface height, or the fallback
+     * while its chunk is not loaded.
+     */
+    private double markerY(long claimId, Location lesser, int x, int z) {
+        MarkerHeight height = knownHeight(claimId, lesser.getWorld(), x, z);
+        if (height != null) {
+            return height.y();
+        }
+        awaitChunk(claimId, lesser.getWorld(), x, z);
+        Integer fallback = plugin.getConfigManager().getDynmapFallbackMarkerY();
+        return fallback != null ? fallback : lesser.getBlockY();
+    }
+
+    /**
+     * Cached surface height at a claim's marker column, or read from the chunk if it is loaded.
+     * Null if the chunk would have to be loaded.
+     */
+    private MarkerHeight knownHeight(long claimId, World world, int x, int z) {
+        MarkerHeight height = heights.get(claimId);
+        if (height != null && height.x() == x && height.z() == z) {
+            return height;
+        }
+        if (!world.isChunkLoaded(x >> 4, z >> 4)) {
+            return null;
+        }
+        height = new MarkerHeight(x, z, world.getHighestBlockYAt(x, z));
+        heights.put(claimId, height);
+        return height;
+    }
+
+    private void awaitChunk(long claimId, World world, int x, int z) {
+        ChunkRef chunk = new ChunkRef(world.getUID(), Chunk.getChunkKey(x >> 4, z >> 4));
+        if (chunk.equals(awaitedChunkOf.get(claimId))) {
+            return;
+        }
+        // A claim that moved stops waiting on its old chunk
+        stopAwaiting(claimId);
+        awaitedChunkOf.put(claimId, chunk);
+
+        LongObjectMap<Set<Long>> chunks = awaitingChunk.computeIfAbsent(chunk.world(), k -> new LongObjectMap<>());
+        long key = chunk.key();
+        Set<Long> claimIds = chunks.get(key);
+        if (claimIds == null) {
+            claimIds = new HashSet<>();
+            chunks.put(key, claimIds);
+        }
+        claimIds.add(claimId);
+    }
+
+    /**
+     * Fill in the heights of markers that were waiting for this chunk.
+     */
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onChunkLoad(ChunkLoadEvent event) {
+        LongObjectMap<Set<Long>> chunks = awaitingChunk.get(event.getWorld().getUID());
+        if (chunks == null) {
+            return;
+        }
+        Set<Long> claimIds = chunks.remove(event.getChunk().getChunkKey());
+        if (claimIds == null) {
+            return;
+        }
+        for (long claimId : claimIds) {
+            awaitedChunkOf.remove(claimId);
+            String name = plugin.getNamingDataManager().getClaimName(claimId);
+            if (name != null) {
+                syncMarker(claimId, label(claimId, name));
+            }
+        }
+    }
+
+    private record MarkerHeight(int x, int z, int y) {
+    }
+
+    private record ChunkRef(UUID world, long key) {
+    }
+
+    /**
+     * One reconcile pass: walks the named claims, then deletes markers no name accounts for,
+     * handling at most the configured number of markers per tick. Names are re-read as it goes,
+     * so edits made meanwhile through {@link #updateMarker} are not undone.
+     */
+    private class MarkerSync extends BukkitRunnable {
+
+        private final long[] claimIds;
+        private final List<String> unclaimed = new ArrayList<>();
+        private int next;
+
+        MarkerSync(ClaimNameTable names) {
+            claimIds = new long[names.size()];
+            int[] count = {0};
+            names.forEach((claimId, name) -> claimIds[count[0]++] = claimId);
+
+            // Existing markers without a name in the table are deleted at the end
+            for (Marker marker : markerSet.getMarkers()) {
+                Long claimId = claimIdOf(marker.getMarkerID());
+                if (claimId == null || names.get(claimId) == null) {
+                    unclaimed.add(marker.getMarkerID());
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            int budget = Math.max(1, plugin.getConfigManager().getDynmapMarkersPerTick());
+
+            for (; budget > 0 && next < claimIds.length; budget--, next++) {
+                long claimId = claimIds[next];
+                String name = plugin.getNamingDataManager().getClaimName(claimId);
+                if (name == null) {
+                    deleteMarker(claimId);
+                } else {
+                    syncMarker(claimId, label(claimId, name));
+                }
+            }
+
+            while (budget > 0 && !unclaimed.isEmpty()) {
+                String markerId = unclaimed.remove(unclaimed.size() - 1);
+                Long claimId = claimIdOf(markerId);
+                Marker marker = markerSet.findMarker(markerId);
+                if (marker != null && (claimId == null || plugin.getNamingDataManager().getClaimName(claimId) == null)) {
+                    marker.deleteMarker();
+                    if (claimId != null) {
+                        forget(claimId);
+                    }
+                    budget--;
+                }
+            }
+
+            if (next >= claimIds.length && unclaimed.isEmpty()) {
+                cancel();
+                if (sync == this) {
+                    sync = null;
+                }
+            }
+        }
+
+        private Long claimIdOf(String id) {
+            if (id == null || !id.startsWith(MARKER_PREFIX)) {
+                return null;
+            }
+            try {
+                return Long.parseLong(id.substring(MARKER_PREFIX.length()));
+            } catch (NumberFormatException e) {
+                return null;
+            }
         }
     }
 }
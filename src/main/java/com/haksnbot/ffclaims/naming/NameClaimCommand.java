@@ -1,6 +1,7 @@
 package com.haksnbot.ffclaims.naming;
 
 import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.naming.ClaimNameRenderCache.RenderedName;
 import me.ryanhamshire.GriefPrevention.Claim;
 import org.bukkit.ChatColor;
 import org.bukkit.command.Command;
@@ -46,10 +47,10 @@ public class NameClaimCommand implements CommandExecutor {
 
         // No args: show current name
         if (args.length == 0) {
-            String name = plugin.getNamingDataManager().getClaimName(claimId);
+            RenderedName name = plugin.getNamingDataManager().getRenderedName(claimId);
             if (name != null) {
                 player.sendMessage(plugin.getConfigManager().getMessage("naming.current-name")
-                        .replace("%name%", ChatColor.translateAlternateColorCodes('&', name)));
+                        .replace("%name%", name.colored()));
             } else {
                 player.sendMessage(plugin.getConfigManager().getMessage("naming.no-name"));
             }
@@ -84,9 +85,8 @@ public class NameClaimCommand implements CommandExecutor {
             plugin.getDynmapIntegration().updateMarker(claimId, name);
         }
 
-        String colorized = ChatColor.translateAlternateColorCodes('&', name);
         player.sendMessage(plugin.getConfigManager().getMessage("naming.claim-named")
-                .replace("%name%", colorized));
+                .replace("%name%", plugin.getNamingDataManager().getRenderedName(claimId).colored()));
         return true;
     }
 }
@@ -0,0 +1,128 @@
+package com.haksnbot.ffclaims.naming;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * Read-only view of a naming-data.bin snapshot, held as one byte array.
+ * Layout: [magic][version][count] [count sorted claim IDs as longs]
+ * [count + 1 int offsets into the blob] [UTF-8 name blob].
+ * Nothing is parsed up front; lookups binary-search the ID array in place and decode
+ * only the name they return. Only absolute reads are used, so it is safe to share.
+ */
+final class NameSnapshot {
+
+    private static final int MAGIC = 0x4646434E; // "FFCN"
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 10;
+
+    static final NameSnapshot EMPTY = new NameSnapshot(ByteBuffer.wrap(encode(new long[0], new String[0], 0)), 0);
+
+    private final ByteBuffer buffer;
+    private final int count;
+    private final int offsetsStart;
+    private final int blobStart;
+
+    private NameSnapshot(ByteBuffer buffer, int count) {
+        this.buffer = buffer;
+        this.count = count;
+        this.offsetsStart = HEADER_SIZE + count * 8;
+        this.blobStart = offsetsStart + (count + 1) * 4;
+    }
+
+    /**
+     * Read a snapshot file into memory. The file is closed again straight away, so it can be
+     * replaced by the next save; it is not memory-mapped for that reason.
+     */
+    static NameSnapshot read(File file) throws IOException {
+        return wrap(ByteBuffer.wrap(Files.readAllBytes(file.toPath())));
+    }
+
+    /**
+     * View snapshot bytes, checking the header and table bounds.
+     */
+    static NameSnapshot wrap(ByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("not a claim name snapshot");
+        }
+        if (buffer.getShort(4) != VERSION) {
+            throw new IOException("unsupported claim name snapshot version " + buffer.getShort(4));
+        }
+        int count = buffer.getInt(6);
+        long blobStart = HEADER_SIZE + count * 8L + (count + 1) * 4L;
+        if (count < 0 || blobStart > buffer.capacity()
+                || blobStart + buffer.getInt((int) blobStart - 4) > buffer.capacity()) {
+            throw new IOException("truncated claim name snapshot");
+        }
+        return new NameSnapshot(buffer, count);
+    }
+
+    /**
+     * Encode sorted, distinct claim IDs and their names.
+     */
+    static byte[] encode(long[] ids, String[] names, int count) {
+        byte[][] encoded = new byte[count][];
+        int blobSize = 0;
+        for (int i = 0; i < count; i++) {
+            encoded[i] = names[i].getBytes(StandardCharsets.UTF_8);
+            blobSize += encoded[i].length;
+        }
+
+        ByteBuffer out = ByteBuffer.allocate(HEADER_SIZE + count * 8 + (count + 1) * 4 + blobSize);
+        out.putInt(MAGIC);
+        out.putShort(VERSION);
+        out.putInt(count);
+        for (int i = 0; i < count; i++) {
+            out.putLong(ids[i]);
+        }
+        int offset = 0;
+        for (int i = 0; i < count; i++) {
+            out.putInt(offset);
+            offset += encoded[i].length;
+        }
+        out.putInt(offset);
+        for (int i = 0; i < count; i++) {
+            out.put(encoded[i]);
+        }
+        return out.array();
+    }
+
+    int size() {
+        return count;
+    }
+
+    long idAt(int index) {
+        return buffer.getLong(HEADER_SIZE + index * 8);
+    }
+
+    String nameAt(int index) {
+        int start = buffer.getInt(offsetsStart + index * 4);
+        int end = buffer.getInt(offsetsStart + (index + 1) * 4);
+        byte[] bytes = new byte[end - start];
+        buffer.get(blobStart + start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Index of a claim ID, or -(insertion point) - 1 like {@link java.util.Arrays#binarySearch}.
+     */
+    int indexOf(long claimId) {
+        int low = 0;
+        int high = count - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = idAt(mid);
+            if (midId < claimId) {
+                low = mid + 1;
+            } else if (midId > claimId) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+}
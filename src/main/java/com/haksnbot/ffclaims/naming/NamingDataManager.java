@@ -1,82 +1,205 @@
 package com.haksnbot.ffclaims.naming;
 
+import com.haksnbot.ffclaims.FFClaimsPlugin;
+import com.haksnbot.ffclaims.storage.AtomicFiles;
+import com.haksnbot.ffclaims.storage.PersistentStore;
+import org.bukkit.configuration.ConfigurationSection;
+import org.bukkit.configuration.InvalidConfigurationException;
 import org.bukkit.configuration.file.YamlConfiguration;
-import org.bukkit.plugin.java.JavaPlugin;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.Map;
+import java.nio.ByteBuffer;
+import java.util.Set;
+import java.util.function.Consumer;
 
 /**
  * Data manager for claim names.
+ * Names live in an immutable {@link ClaimNameTable} that is swapped on every edit, so reads
+ * are lock-free and safe from any thread. They are stored in naming-data.bin, which is
+ * read as-is at startup instead of parsed; naming-data.yml is kept as an import/export
+ * format. Changes are written by the persistence service, so a burst of edits costs one write.
  */
-public class NamingDataManager {
+public class NamingDataManager implements PersistentStore<ClaimNameTable> {
 
-    private final JavaPlugin plugin;
-    private final Map<Long, String> claimNames = new HashMap<>();
-    private File dataFile;
-    private YamlConfiguration dataConfig;
+    private final FFClaimsPlugin plugin;
+    private final File dataFile;
+    private final File yamlFile;
+    private final ClaimNameRenderCache renderCache;
+    private volatile ClaimNameTable table = ClaimNameTable.EMPTY;
 
-    public NamingDataManager(JavaPlugin plugin) {
+    public NamingDataManager(FFClaimsPlugin plugin) {
         this.plugin = plugin;
+        this.dataFile = new File(plugin.getDataFolder(), "naming-data.bin");
+        this.yamlFile = new File(plugin.getDataFolder(), "naming-data.yml");
+        this.renderCache = new ClaimNameRenderCache(plugin);
     }
 
-    public Map<Long, String> getClaimNames() {
-        return claimNames;
+    /**
+     * Immutable view of all names at this moment; safe to iterate from any thread.
+     */
+    public ClaimNameTable getClaimNames() {
+        return table;
     }
 
+    /**
+     * Read naming-data.bin, or convert naming-data.yml the first time.
+     */
     public void load() {
-        dataFile = new File(plugin.getDataFolder(), "naming-data.yml");
-        if (!dataFile.exists()) {
-            dataFile.getParentFile().mkdirs();
+        renderCache.clear();
+        if (dataFile.exists()) {
             try {
-                dataFile.createNewFile();
+                table = ClaimNameTable.of(NameSnapshot.read(dataFile));
+                return;
             } catch (IOException e) {
-                plugin.getLogger().warning("Could not create naming-data.yml: " + e.getMessage());
+                plugin.getLogger().severe("Could not read naming-data.bin: " + e.getMessage());
             }
         }
-        dataConfig = YamlConfiguration.loadConfiguration(dataFile);
-
-        claimNames.clear();
-        if (dataConfig.contains("claims")) {
-            for (String key : dataConfig.getConfigurationSection("claims").getKeys(false)) {
-                try {
-                    long id = Long.parseLong(key);
-                    claimNames.put(id, dataConfig.getString("claims." + key));
-                } catch (NumberFormatException ignored) {
+
+        table = ClaimNameTable.EMPTY;
+        if (yamlFile.exists()) {
+            try {
+                table = readYaml(yamlFile);
+            } catch (IOException | InvalidConfigurationException e) {
+                plugin.getLogger().severe("Could not read naming-data.yml: " + e.getMessage());
+                return;
+            }
+            try {
+                AtomicFiles.write(dataFile, table.encode());
+                if (!yamlFile.renameTo(new File(yamlFile.getParentFile(), "naming-data.yml.imported"))) {
+                    plugin.getLogger().warning("Could not rename naming-data.yml after conversion.");
                 }
+                plugin.getLogger().info("Converted " + table.size() + " claim names from naming-data.yml to naming-data.bin.");
+            } catch (IOException e) {
+                plugin.getLogger().severe("Could not write naming-data.bin: " + e.getMessage());
             }
         }
     }
 
-    public void save() {
-        if (dataConfig == null) return;
+    private static ClaimNameTable readYaml(File file) throws IOException, InvalidConfigurationException {
+        // load() rather than loadConfiguration(), which would hand back an empty config on a parse error
+        YamlConfiguration dataConfig = new YamlConfiguration();
+        dataConfig.load(file);
+
+        ConfigurationSection claims = dataConfig.getConfigurationSection("claims");
+        if (claims == null) {
+            return ClaimNameTable.EMPTY;
+        }
 
-        // Clear and rewrite
-        dataConfig.set("claims", null);
-        for (Map.Entry<Long, String> entry : claimNames.entrySet()) {
-            dataConfig.set("claims." + entry.getKey(), entry.getValue());
+        Set<String> keys = claims.getKeys(false);
+        long[] ids = new long[keys.size()];
+        String[] names = new String[keys.size()];
+        int size = 0;
+        for (String key : keys) {
+            // Skip entries without a usable name, such as nested sections
+            String name = claims.isConfigurationSection(key) ? null : claims.getString(key);
+            if (name == null) {
+                continue;
+            }
+            try {
+                ids[size] = Long.parseLong(key);
+                names[size] = name;
+                size++;
+            } catch (NumberFormatException ignored) {
+            }
         }
+        return ClaimNameTable.of(ids, names, size);
+    }
 
-        try {
-            dataConfig.save(dataFile);
-        } catch (IOException e) {
-            plugin.getLogger().warning("Could not save naming-data.yml: " + e.getMessage());
+    /**
+     * Replace all names with the contents of naming-data.yml. The file is parsed off the
+     * main thread; the callback receives the number of names imported, -1 if there is no file,
+     * or null if the file could not be read.
+     */
+    public void importYaml(Consumer<Integer> callback) {
+        if (!yamlFile.exists()) {
+            callback.accept(-1);
+            return;
+        }
+        plugin.getPersistenceService().query("import naming-data.yml",
+                () -> readYaml(yamlFile),
+                imported -> {
+                    if (imported == null) {
+                        callback.accept(null);
+                        return;
+                    }
+                    synchronized (this) {
+                        table = imported;
+                    }
+                    renderCache.clear();
+                    plugin.getPersistenceService().markDirty(this);
+                    callback.accept(imported.size());
+                });
+    }
+
+    /**
+     * Write all names to naming-data.yml off the main thread.
+     * The callback receives the number of names exported, or null if the write failed.
+     */
+    public void exportYaml(Consumer<Integer> callback) {
+        ClaimNameTable snapshot = table;
+        plugin.getPersistenceService().query("export naming-data.yml", () -> {
+            YamlConfiguration dataConfig = new YamlConfiguration();
+            snapshot.forEach((claimId, name) -> dataConfig.set("claims." + claimId, name));
+            AtomicFiles.write(yamlFile, dataConfig.saveToString());
+            return snapshot.size();
+        }, callback);
+    }
+
+    /**
+     * Queue an immediate write of all names.
+     */
+    public void save() {
+        plugin.getPersistenceService().writeNow(this);
+    }
+
+    @Override
+    public String getStoreName() {
+        return "naming-data.bin";
+    }
+
+    @Override
+    public ClaimNameTable snapshot() {
+        return table;
+    }
+
+    /**
+     * Writes the merged table to a new file and renames it into place. Nothing holds the old
+     * file open, since snapshots are read into memory. The written bytes then become the base
+     * of the live table, so its overlay only holds edits that are not on disk yet.
+     */
+    @Override
+    public void write(ClaimNameTable snapshot) throws IOException {
+        byte[] encoded = snapshot.encode();
+        AtomicFiles.write(dataFile, encoded);
+
+        NameSnapshot written = NameSnapshot.wrap(ByteBuffer.wrap(encoded));
+        synchronized (this) {
+            table = table.rebase(snapshot, written);
         }
     }
 
     public String getClaimName(long claimId) {
-        return claimNames.get(claimId);
+        return table.get(claimId);
+    }
+
+    /**
+     * Display forms of a claim's name, rendered on first use. Main thread only.
+     * @return null if the claim has no name
+     */
+    public ClaimNameRenderCache.RenderedName getRenderedName(long claimId) {
+        return renderCache.get(claimId, table);
     }
 
-    public void setClaimName(long claimId, String name) {
-        claimNames.put(claimId, name);
-        save();
+    public synchronized void setClaimName(long claimId, String name) {
+        table = table.with(claimId, name);
+        renderCache.invalidate(claimId);
+        plugin.getPersistenceService().markDirty(this);
     }
 
-    public void removeClaimName(long claimId) {
-        claimNames.remove(claimId);
-        save();
+    public synchronized void removeClaimName(long claimId) {
+        table = table.with(claimId, null);
+        renderCache.invalidate(claimId);
+        plugin.getPersistenceService().markDirty(this);
     }
 }
@@ -0,0 +1,159 @@
+package com.haksnbot.ffclaims.storage;
+
+import org.bukkit.plugin.java.JavaPlugin;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Shared background writer for all plugin data files.
+ * Stores are marked dirty from the main thread; after a short delay every dirty store is
+ * snapshotted on the main thread and written on a single virtual writer thread, so a burst
+ * of changes costs one write and no disk I/O happens during the tick. Writes run in
+ * submission order.
+ */
+public class PersistenceService {
+
+    private final JavaPlugin plugin;
+    private final long writeDelayTicks;
+    private final ExecutorService writer;
+    private final Set<PersistentStore<?>> dirtyStores = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    // Set once the writer has shut down and finished every queued task
+    private volatile boolean drained;
+
+    public PersistenceService(JavaPlugin plugin, long writeDelayTicks) {
+        this.plugin = plugin;
+        this.writeDelayTicks = Math.max(1, writeDelayTicks);
+        this.writer = Executors.newSingleThreadExecutor(Thread.ofVirtual().name("FFClaims-Writer").factory());
+    }
+
+    /**
+     * Mark a store as changed. It will be written once after the write delay,
+     * however many times it is marked in the meantime.
+     */
+    public void markDirty(PersistentStore<?> store) {
+        if (writer.isShutdown()) {
+            writeNow(store);
+            return;
+        }
+        dirtyStores.add(store);
+        if (flushScheduled.compareAndSet(false, true)) {
+            plugin.getServer().getScheduler().runTaskLater(plugin, this::flush, writeDelayTicks);
+        }
+    }
+
+    /**
+     * Snapshot every dirty store and queue its write. Must be called on the main thread.
+     */
+    public void flush() {
+        flushScheduled.set(false);
+        Iterator<PersistentStore<?>> it = dirtyStores.iterator();
+        while (it.hasNext()) {
+            PersistentStore<?> store = it.next();
+            it.remove();
+            writeNow(store);
+        }
+    }
+
+    /**
+     * Snapshot a store now and queue its write, bypassing the write delay.
+     */
+    public <S> void writeNow(PersistentStore<S> store) {
+        S snapshot = store.snapshot();
+        execute(() -> {
+            try {
+                store.write(snapshot);
+            } catch (Exception e) {
+                plugin.getLogger().severe("Failed to save " + store.getStoreName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Run a task on the writer thread, after every previously queued write.
+     * Once the service has shut down it runs inline, but only if the writer drained in
+     * time; a writer still busy with queued writes could race it on the same file, so the
+     * task is dropped instead.
+     */
+    public void execute(Runnable task) {
+        try {
+            writer.execute(task);
+        } catch (RejectedExecutionException e) {
+            if (drained) {
+                task.run();
+            } else {
+                plugin.getLogger().severe("Dropped a data write after shutdown: earlier writes are still running.");
+            }
+        }
+    }
+
+    /**
+     * Run a read on the writer thread, after every write queued so far, and hand the
+     * result to the callback on the main thread. A failed read is logged and the
+     * callback receives null, so callers can still answer whoever asked.
+     */
+    public <T> void query(String description, Callable<T> query, Consumer<T> callback) {
+        execute(() -> {
+            T result;
+            try {
+                result = query.call();
+            } catch (Exception e) {
+                plugin.getLogger().severe("Failed to " + description + ": " + e.getMessage());
+                result = null;
+            }
+            if (plugin.isEnabled()) {
+                T answer = result;
+                plugin.getServer().getScheduler().runTask(plugin, () -> callback.accept(answer));
+            }
+        });
+    }
+
+    /**
+     * Block until every write queued so far has finished.
+     */
+    public void awaitPending(long timeout, TimeUnit unit) {
+        if (writer.isShutdown()) {
+            return;
+        }
+        try {
+            Future<?> marker = writer.submit(() -> { });
+            marker.get(timeout, unit);
+        } catch (TimeoutException e) {
+            plugin.getLogger().warning("Timed out waiting for pending data writes.");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            plugin.getLogger().warning("Interrupted while waiting for pending data writes.");
+        } catch (ExecutionException | RejectedExecutionException e) {
+            plugin.getLogger().warning("Could not wait for pending data writes: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write every dirty store and wait, up to the timeout, for the queue to drain.
+     */
+    public void shutdown(long timeoutSeconds) {
+        flush();
+        writer.shutdown();
+        try {
+            if (writer.awaitTermination(timeoutSeconds, TimeUnit.SECONDS)) {
+                drained = true;
+            } else {
+                plugin.getLogger().severe("Pending data writes did not finish within " + timeoutSeconds + "s.");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.haksnbot.ffclaims.storage;
+
+import java.io.IOException;
+
+/**
+ * A data set that is persisted by the {@link PersistenceService}.
+ *
+ * @param <S> immutable snapshot type handed from the main thread to the writer thread
+ */
+public interface PersistentStore<S> {
+
+    /**
+     * Name used in log messages.
+     */
+    String getStoreName();
+
+    /**
+     * Capture the current state. Called on the main thread, so this must be cheap
+     * (copy references, not serialize).
+     */
+    S snapshot();
+
+    /**
+     * Serialize and write a snapshot. Called on the writer thread.
+     */
+    void write(S snapshot) throws IOException;
+}
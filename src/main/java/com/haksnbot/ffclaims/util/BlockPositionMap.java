@@ -0,0 +1,66 @@
+package com.haksnbot.ffclaims.util;
+
+import org.bukkit.Location;
+import org.bukkit.World;
+import org.bukkit.block.Block;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Map from block positions to values: one {@link LongObjectMap} per world, keyed by
+ * {@link BlockPositions#pack}. Lookups allocate nothing. Not thread-safe.
+ */
+public class BlockPositionMap<V> {
+
+    private final Map<UUID, LongObjectMap<V>> worlds = new HashMap<>();
+
+    public V get(World world, int x, int y, int z) {
+        LongObjectMap<V> positions = worlds.get(world.getUID());
+        return positions != null ? positions.get(BlockPositions.pack(x, y, z)) : null;
+    }
+
+    public V get(Location location) {
+        return get(location.getWorld(), location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+
+    public V get(Block block) {
+        return get(block.getWorld(), block.getX(), block.getY(), block.getZ());
+    }
+
+    public boolean contains(Block block) {
+        return get(block) != null;
+    }
+
+    /**
+     * @return the previous value at this position, or null
+     */
+    public V put(Location location, V value) {
+        return worlds.computeIfAbsent(location.getWorld().getUID(), k -> new LongObjectMap<>())
+                .put(pack(location), value);
+    }
+
+    /**
+     * @return the removed value, or null
+     */
+    public V remove(Location location) {
+        LongObjectMap<V> positions = worlds.get(location.getWorld().getUID());
+        if (positions == null) {
+            return null;
+        }
+        V removed = positions.remove(pack(location));
+        if (positions.isEmpty()) {
+            worlds.remove(location.getWorld().getUID());
+        }
+        return removed;
+    }
+
+    public void clear() {
+        worlds.clear();
+    }
+
+    private static long pack(Location location) {
+        return BlockPositions.pack(location.getBlockX(), location.getBlockY(), location.getBlockZ());
+    }
+}
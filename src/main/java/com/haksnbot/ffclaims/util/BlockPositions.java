@@ -0,0 +1,35 @@
+package com.haksnbot.ffclaims.util;
+
+/**
+ * Packs block coordinates into a single long, in the same layout as Minecraft's
+ * {@code BlockPos.asLong}: 26 bits of x, 26 bits of z and 12 bits of y.
+ * Covers the whole world border and build height.
+ */
+public final class BlockPositions {
+
+    private static final int XZ_BITS = 26;
+    private static final int Y_BITS = 12;
+    private static final long XZ_MASK = (1L << XZ_BITS) - 1;
+    private static final long Y_MASK = (1L << Y_BITS) - 1;
+    private static final int X_SHIFT = XZ_BITS + Y_BITS;
+    private static final int Z_SHIFT = Y_BITS;
+
+    private BlockPositions() {
+    }
+
+    public static long pack(int x, int y, int z) {
+        return ((x & XZ_MASK) << X_SHIFT) | ((z & XZ_MASK) << Z_SHIFT) | (y & Y_MASK);
+    }
+
+    public static int unpackX(long packed) {
+        return (int) (packed >> X_SHIFT);
+    }
+
+    public static int unpackY(long packed) {
+        return (int) (packed << (64 - Y_BITS) >> (64 - Y_BITS));
+    }
+
+    public static int unpackZ(long packed) {
+        return (int) (packed << (64 - X_SHIFT) >> (64 - XZ_BITS));
+    }
+}
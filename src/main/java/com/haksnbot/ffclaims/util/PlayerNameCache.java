@@ -0,0 +1,154 @@
+package com.haksnbot.ffclaims.util;
+
+import org.bukkit.Bukkit;
+import org.bukkit.OfflinePlayer;
+import org.bukkit.entity.Player;
+import org.bukkit.event.EventHandler;
+import org.bukkit.event.EventPriority;
+import org.bukkit.event.Listener;
+import org.bukkit.event.player.PlayerJoinEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.plugin.Plugin;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+/**
+ * Bounded UUID ⇄ name cache for offline players, least recently used entries evicted first.
+ * Warmed from joins and quits and from names the plugin already stores; misses are looked up
+ * through Bukkit off the main thread, since that can hit the user cache on disk or Mojang.
+ * Thread-safe.
+ */
+public class PlayerNameCache implements Listener {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private final Plugin plugin;
+    private final Map<UUID, String> names;
+    // Keyed by lower-case name
+    private final Map<String, UUID> uuids;
+
+    public PlayerNameCache(Plugin plugin, int capacity) {
+        this.plugin = plugin;
+        this.names = lruMap(capacity);
+        this.uuids = lruMap(capacity);
+    }
+
+    private static <K, V> Map<K, V> lruMap(int capacity) {
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * Remember a player's name.
+     */
+    public synchronized void put(UUID uuid, String name) {
+        if (uuid == null || name == null) {
+            return;
+        }
+        String previous = names.put(uuid, name);
+        if (previous != null && !previous.equalsIgnoreCase(name)) {
+            uuids.remove(previous.toLowerCase(Locale.ROOT));
+        }
+        uuids.put(name.toLowerCase(Locale.ROOT), uuid);
+    }
+
+    /**
+     * Cached name for a UUID, or null if it is not cached.
+     */
+    public synchronized String getName(UUID uuid) {
+        return names.get(uuid);
+    }
+
+    /**
+     * Cached UUID for a name (any case), or null if it is not cached.
+     */
+    public synchronized UUID getUUID(String name) {
+        return uuids.get(name.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Name for a UUID, looking it up through Bukkit on a miss. Blocks; not for the main thread.
+     * @return null if the player has never been seen
+     */
+    public String lookupName(UUID uuid) {
+        String name = getName(uuid);
+        if (name == null) {
+            name = Bukkit.getOfflinePlayer(uuid).getName();
+            put(uuid, name);
+        }
+        return name;
+    }
+
+    /**
+     * UUID of a player who has played here, looking it up through Bukkit on a miss.
+     * Blocks; not for the main thread.
+     * @return null if no such player has joined this server
+     */
+    public UUID lookupUUID(String name) {
+        UUID uuid = getUUID(name);
+        if (uuid == null) {
+            @SuppressWarnings("deprecation")
+            OfflinePlayer player = Bukkit.getOfflinePlayer(name);
+            if (player.hasPlayedBefore() || player.isOnline()) {
+                uuid = player.getUniqueId();
+                put(uuid, player.getName() != null ? player.getName() : name);
+            }
+        }
+        return uuid;
+    }
+
+    /**
+     * Resolve a name, calling back on the main thread (immediately if it is cached).
+     */
+    public void resolveName(UUID uuid, Consumer<String> callback) {
+        String cached = getName(uuid);
+        if (cached != null) {
+            callback.accept(cached);
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            String name = lookupName(uuid);
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, () -> callback.accept(name));
+            }
+        });
+    }
+
+    /**
+     * Resolve a player's UUID by name, calling back on the main thread (immediately if it is
+     * cached). The callback receives null if no such player has joined this server.
+     */
+    public void resolveUUID(String name, Consumer<UUID> callback) {
+        UUID cached = getUUID(name);
+        if (cached != null) {
+            callback.accept(cached);
+            return;
+        }
+        Bukkit.getScheduler().runTaskAsynchronously(plugin, () -> {
+            UUID uuid = lookupUUID(name);
+            if (plugin.isEnabled()) {
+                Bukkit.getScheduler().runTask(plugin, () -> callback.accept(uuid));
+            }
+        });
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent event) {
+        Player player = event.getPlayer();
+        put(player.getUniqueId(), player.getName());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent event) {
+        Player player = event.getPlayer();
+        put(player.getUniqueId(), player.getName());
+    }
+}
@@ -0,0 +1,258 @@
+package com.haksnbot.ffclaims.market.signs;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks {@link SignInputLexer} against the parser it replaced, on generated input. Whatever the
+ * old parser read must come out with the same value, and the two may only disagree where the
+ * lexer is documented to differ: it rejects Java number syntax (exponents, signs, d/f suffixes)
+ * in prices, it accepts a space between a duration's number and its unit, and it rejects a
+ * number with two decimal points even after the last unit, where the old parser ignored it.
+ * Fractional durations may also come out up to 1 ms apart per unit, as the lexer multiplies by
+ * the unit in one step where the old parser multiplied by 24, 60, 60 and 1000 in turn.
+ */
+class SignInputLexerTest {
+
+    private static final int RUNS = 200_000;
+    private static final long SEED = 20_241_017L;
+
+    private static final String PRICE_ALPHABET = "0123456789.,$ kKmMbBeE+-dDfFxX";
+    private static final String DURATION_ALPHABET = "0123456789. dhmsDHMSxay";
+    private static final Pattern JAVA_NUMBER_SYNTAX = Pattern.compile("[eE+\\-dDfFxX]");
+    private static final Pattern SPACE_BEFORE_UNIT = Pattern.compile("[0-9.] +[a-zA-Z]");
+    private static final Pattern TWO_POINTS = Pattern.compile("\\.[0-9]*\\.");
+
+    @Test
+    void priceMatchesOldParserOnWellFormedInput() {
+        Random random = new Random(SEED);
+        for (int run = 0; run < RUNS; run++) {
+            String input = wellFormedPrice(random);
+            SignInputLexer.Lexed lexed = SignInputLexer.price(input);
+            assertTrue(lexed.isOk(), input);
+            assertEquals(OldParser.parsePrice(input), lexed.value(), input);
+        }
+    }
+
+    @Test
+    void priceAgreesWithOldParserOnRandomInput() {
+        Random random = new Random(SEED);
+        for (int run = 0; run < RUNS; run++) {
+            String input = randomString(random, PRICE_ALPHABET, 8);
+            Double old = oldPrice(input);
+            SignInputLexer.Lexed lexed = SignInputLexer.price(input);
+            if (lexed.isOk()) {
+                assertNotNull(old, input);
+                assertEquals(old, lexed.value(), input);
+            } else if (old != null) {
+                assertTrue(JAVA_NUMBER_SYNTAX.matcher(input).find(), input);
+            }
+        }
+    }
+
+    @Test
+    void durationMatchesOldParserOnWellFormedInput() {
+        Random random = new Random(SEED);
+        for (int run = 0; run < RUNS; run++) {
+            String input = wellFormedDuration(random);
+            SignInputLexer.Lexed lexed = SignInputLexer.duration(input);
+            assertTrue(lexed.isOk(), input);
+            assertEquals(OldParser.parseDuration(input), lexed.millis(), input);
+        }
+    }
+
+    @Test
+    void durationAgreesWithOldParserOnRandomInput() {
+        Random random = new Random(SEED);
+        for (int run = 0; run < RUNS; run++) {
+            String input = randomString(random, DURATION_ALPHABET, 8);
+            Long old = oldDuration(input);
+            SignInputLexer.Lexed lexed = SignInputLexer.duration(input);
+            if (old != null && !TWO_POINTS.matcher(input).find()) {
+                assertTrue(lexed.isOk(), input);
+                long units = Math.max(1, input.chars().filter(c -> "dhmsDHMS".indexOf(c) >= 0).count());
+                assertTrue(Math.abs(old - lexed.millis()) <= units, input + ": " + old + " vs " + lexed.millis());
+            } else if (old == null && lexed.isOk()) {
+                assertTrue(SPACE_BEFORE_UNIT.matcher(input).find(), input);
+            }
+        }
+    }
+
+    @Test
+    void documentedDifferences() {
+        assertFalse(SignInputLexer.price("1e3").isOk());
+        assertFalse(SignInputLexer.price("-5").isOk());
+        assertFalse(SignInputLexer.price("5d").isOk());
+        assertFalse(SignInputLexer.price("NaN").isOk());
+        assertEquals(2 * 24 * 3_600_000L, SignInputLexer.duration("2 days").millis());
+        assertEquals(30 * 60_000L, SignInputLexer.duration("30 mins").millis());
+        assertFalse(SignInputLexer.duration("9m9..").isOk());
+    }
+
+    // ==================== GENERATORS ====================
+
+    private static String wellFormedPrice(Random random) {
+        StringBuilder input = new StringBuilder();
+        if (random.nextBoolean()) {
+            input.append('$');
+        }
+        int digits = 1 + random.nextInt(7);
+        for (int i = 0; i < digits; i++) {
+            if (i > 0 && (digits - i) % 3 == 0 && random.nextBoolean()) {
+                input.append(',');
+            }
+            input.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(3) == 0) {
+            input.append('.');
+            int decimals = random.nextInt(3);
+            for (int i = 0; i < decimals; i++) {
+                input.append((char) ('0' + random.nextInt(10)));
+            }
+        }
+        if (random.nextBoolean()) {
+            if (random.nextInt(4) == 0) {
+                input.append(' ');
+            }
+            char suffix = "kmb".charAt(random.nextInt(3));
+            input.append(random.nextBoolean() ? suffix : Character.toUpperCase(suffix));
+        }
+        return input.toString();
+    }
+
+    private static String wellFormedDuration(Random random) {
+        StringBuilder input = new StringBuilder();
+        if (random.nextInt(5) == 0) {
+            // A lone number is hours
+            return input.append(1 + random.nextInt(999)).toString();
+        }
+        int parts = 1 + random.nextInt(3);
+        for (int i = 0; i < parts; i++) {
+            if (i > 0 && random.nextBoolean()) {
+                input.append(' ');
+            }
+            input.append(1 + random.nextInt(999));
+            if (random.nextInt(4) == 0) {
+                input.append(".5");
+            }
+            int unit = random.nextInt(4);
+            input.append(random.nextBoolean() ? "dhms".charAt(unit) : "DHMS".charAt(unit));
+            if (random.nextInt(3) == 0) {
+                input.append(new String[]{"ays", "ours", "ins", "ecs"}[unit]);
+            }
+        }
+        return input.toString();
+    }
+
+    private static String randomString(Random random, String alphabet, int maxLength) {
+        int length = random.nextInt(maxLength + 1);
+        StringBuilder input = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            input.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return input.toString();
+    }
+
+    private static Double oldPrice(String input) {
+        try {
+            return OldParser.parsePrice(input);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    private static Long oldDuration(String input) {
+        try {
+            return OldParser.parseDuration(input);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * SignFormatter.parsePrice and parseDuration as they were before SignInputLexer replaced them.
+     */
+    private static final class OldParser {
+
+        static double parsePrice(String input) throws NumberFormatException {
+            if (input == null || input.isEmpty()) {
+                throw new NumberFormatException("Empty price");
+            }
+
+            String cleaned = input.trim()
+                .replace("$", "")
+                .replace(",", "")
+                .replace(" ", "")
+                .toLowerCase();
+
+            if (cleaned.isEmpty()) {
+                throw new NumberFormatException("Empty price after cleaning");
+            }
+
+            double multiplier = 1.0;
+
+            if (cleaned.endsWith("k")) {
+                multiplier = 1_000;
+                cleaned = cleaned.substring(0, cleaned.length() - 1);
+            } else if (cleaned.endsWith("m")) {
+                multiplier = 1_000_000;
+                cleaned = cleaned.substring(0, cleaned.length() - 1);
+            } else if (cleaned.endsWith("b")) {
+                multiplier = 1_000_000_000;
+                cleaned = cleaned.substring(0, cleaned.length() - 1);
+            }
+
+            double value = Double.parseDouble(cleaned);
+            return value * multiplier;
+        }
+
+        static long parseDuration(String input) throws IllegalArgumentException {
+            if (input == null || input.isEmpty()) {
+                throw new IllegalArgumentException("Empty duration");
+            }
+
+            String cleaned = input.trim().toLowerCase();
+            long totalMs = 0;
+
+            StringBuilder number = new StringBuilder();
+            for (char c : cleaned.toCharArray()) {
+                if (Character.isDigit(c) || c == '.') {
+                    number.append(c);
+                } else {
+                    if (number.length() == 0) {
+                        continue;
+                    }
+
+                    double value = Double.parseDouble(number.toString());
+                    number = new StringBuilder();
+
+                    switch (c) {
+                        case 'd' -> totalMs += (long) (value * 24 * 60 * 60 * 1000);
+                        case 'h' -> totalMs += (long) (value * 60 * 60 * 1000);
+                        case 'm' -> totalMs += (long) (value * 60 * 1000);
+                        case 's' -> totalMs += (long) (value * 1000);
+                        default -> throw new IllegalArgumentException("Unknown duration unit: " + c);
+                    }
+                }
+            }
+
+            // Handle case where only a number is provided (assume hours)
+            if (number.length() > 0 && totalMs == 0) {
+                totalMs = (long) (Double.parseDouble(number.toString()) * 60 * 60 * 1000);
+            }
+
+            if (totalMs <= 0) {
+                throw new IllegalArgumentException("Invalid duration");
+            }
+
+            return totalMs;
+        }
+    }
+}